@@ -0,0 +1,233 @@
+package fr.paris.lutece.plugins.resource;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import jakarta.enterprise.context.Dependent;
+import jakarta.inject.Inject;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import fr.paris.lutece.plugins.resource.util.ResourceExecutors;
+
+/**
+ * Asynchronous facade of a {@link ResourceManager}. Lookups run on a pluggable executor, a virtual thread per task
+ * when the runtime supports them, and may be given a deadline.
+ * <p>
+ * When a returned future is cancelled or times out while the lookup is still running, the thread of the lookup is
+ * interrupted, and the input stream opened by the lookup, if any, is closed as soon as it is available. A lookup the
+ * executor rejects completes the future with a <code>RejectedExecutionException</code>.
+ * </p>
+ */
+@Dependent
+public class AsyncResourceManager {
+    private static final Logger LOGGER = LogManager.getLogger(AsyncResourceManager.class);
+
+    @Inject
+    private ResourceManager resourceManager;
+
+    /**
+     * Default deadline of the lookups, in milliseconds, zero meaning no deadline.
+     */
+    @Inject
+    @ConfigProperty(name="resourceManager.async.timeout", defaultValue="0")
+    private Long defaultTimeout;
+
+    private Executor executor;
+
+    /**
+     * Creates an asynchronous facade of the injected resource manager.
+     */
+    public AsyncResourceManager() {
+        // used by CDI
+    }
+
+    /**
+     * Creates an asynchronous facade of the given resource manager.
+     *
+     * @param resourceManager the resource manager
+     * @param executor the executor running the lookups, or null to use the default one
+     */
+    public AsyncResourceManager(ResourceManager resourceManager, Executor executor) {
+        this.resourceManager = resourceManager;
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the executor running the lookups.
+     *
+     * @param executor the executor, or null to use the default one
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Searches for a resource asynchronously.
+     *
+     * @param name the name of the resource to search for
+     * @return the future resource, completed with a ResourceNotFoundException if it cannot be found
+     * @see ResourceManager#getResource(String)
+     */
+    public CompletableFuture<LuteceResource> getResourceAsync(String name) {
+        return getResourceAsync(name, null);
+    }
+
+    /**
+     * Searches for a resource asynchronously, within the given deadline.
+     *
+     * @param name the name of the resource to search for
+     * @param timeout the deadline, or null to use the default one
+     * @return the future resource, completed with a ResourceNotFoundException if it cannot be found, or with a
+     *         TimeoutException if the deadline is exceeded
+     * @see ResourceManager#getResource(String)
+     */
+    public CompletableFuture<LuteceResource> getResourceAsync(String name, Duration timeout) {
+        return submit(() -> resourceManager.getResource(name), timeout, null);
+    }
+
+    /**
+     * Retrieves a resource as an InputStream asynchronously.
+     *
+     * @param name the name of the resource to retrieve
+     * @return the future input stream, completed with a ResourceNotFoundException if the resource cannot be found
+     * @see ResourceManager#getResourceAsInputStream(String)
+     */
+    public CompletableFuture<InputStream> getResourceAsInputStreamAsync(String name) {
+        return getResourceAsInputStreamAsync(name, null);
+    }
+
+    /**
+     * Retrieves a resource as an InputStream asynchronously, within the given deadline. A stream opened after the
+     * future was cancelled or timed out is closed.
+     *
+     * @param name the name of the resource to retrieve
+     * @param timeout the deadline, or null to use the default one
+     * @return the future input stream, completed with a ResourceNotFoundException if the resource cannot be found, or
+     *         with a TimeoutException if the deadline is exceeded
+     * @see ResourceManager#getResourceAsInputStream(String)
+     */
+    public CompletableFuture<InputStream> getResourceAsInputStreamAsync(String name, Duration timeout) {
+        return submit(() -> resourceManager.getResourceAsInputStream(name), timeout, AsyncResourceManager::close);
+    }
+
+    /**
+     * Retrieves a resource as a File asynchronously.
+     *
+     * @param name the name of the resource to retrieve
+     * @return the future file, completed with a ResourceNotFoundException if the resource cannot be found, or with a
+     *         FileResourceCreationException if the file cannot be created
+     * @see ResourceManager#getResourceAsFile(String)
+     */
+    public CompletableFuture<File> getResourceAsFileAsync(String name) {
+        return getResourceAsFileAsync(name, null);
+    }
+
+    /**
+     * Retrieves a resource as a File asynchronously, within the given deadline.
+     *
+     * @param name the name of the resource to retrieve
+     * @param timeout the deadline, or null to use the default one
+     * @return the future file, completed with a ResourceNotFoundException if the resource cannot be found, with a
+     *         FileResourceCreationException if the file cannot be created, or with a TimeoutException if the
+     *         deadline is exceeded
+     * @see ResourceManager#getResourceAsFile(String)
+     */
+    public CompletableFuture<File> getResourceAsFileAsync(String name, Duration timeout) {
+        return submit(() -> resourceManager.getResourceAsFile(name), timeout, null);
+    }
+
+    /**
+     * Runs a lookup on the executor.
+     *
+     * @param task the lookup
+     * @param timeout the deadline, or null to use the default one
+     * @param discard releases a result nobody will consume anymore, may be null
+     * @return the future result
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> task, Duration timeout, Consumer<T> discard) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Executor target = executor != null ? executor : ResourceExecutors.asyncExecutor();
+        FutureTask<Void> lookup = new FutureTask<>(ResourceExecutors.withContextClassLoader(() -> {
+            if (result.isDone()) {
+                // cancelled or timed out before it started
+                return;
+            }
+            try {
+                T value = task.call();
+                if (!result.complete(value) && discard != null && value != null) {
+                    LOGGER.debug("Discarding the result of a cancelled or timed out lookup");
+                    discard.accept(value);
+                }
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }), null);
+        result.whenComplete((value, error) -> {
+            if (error instanceof TimeoutException || error instanceof CancellationException) {
+                // interrupts the lookup if it is still running
+                lookup.cancel(true);
+            }
+        });
+        try {
+            target.execute(lookup);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        long timeoutMillis = timeout != null ? timeout.toMillis() : (defaultTimeout != null ? defaultTimeout : 0);
+        if (timeoutMillis > 0) {
+            result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return result;
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOGGER.debug("Failed to close a discarded stream", e);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package fr.paris.lutece.plugins.resource;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import fr.paris.lutece.plugins.resource.loader.FileResourceCreationException;
+import fr.paris.lutece.plugins.resource.loader.ResourceIOException;
+import fr.paris.lutece.plugins.resource.loader.ResourceLoader;
+import fr.paris.lutece.plugins.resource.loader.ResourceNameFilter;
+import fr.paris.lutece.plugins.resource.loader.ResourceNotFoundException;
+import fr.paris.lutece.plugins.resource.util.ResourceGlob;
+import fr.paris.lutece.plugins.resource.util.ResourceListings;
+
+/**
+ * A {@link ResourceManager} overlaying search paths on a parent manager, see
+ * {@link DefaultResourceManager#newChildManager()}.
+ * <p>
+ * The search paths added to a child go to loaders of its own, created on the first search path of each loader ID, and
+ * looked up before the parent. Everything else is read from the parent, with its loaders, indexes and caches, and
+ * the parent never sees the search paths of its children. Closing a child releases its loaders.
+ * </p>
+ */
+public class ChildResourceManager implements ResourceManager, Closeable {
+    private static final Logger LOGGER = LogManager.getLogger(ChildResourceManager.class);
+
+    private final ResourceManager parent;
+
+    private final Function<String, ResourceLoader> loaderFactory;
+
+    private final Consumer<ResourceLoader> loaderDisposer;
+
+    /**
+     * The overlay loaders, by ID.
+     */
+    private final Map<String, ResourceLoader> overlayLoaders = new LinkedHashMap<>();
+
+    /**
+     * The overlay loaders by decreasing ordinal, replaced as a whole when a loader is added.
+     */
+    private volatile List<ResourceLoader> overlays = List.of();
+
+    private File outputDirectory;
+
+    /**
+     * @param parent the manager answering the names the overlay does not hold
+     * @param loaderFactory creates a new loader, given its ID
+     * @param loaderDisposer releases a loader created by the factory
+     */
+    public ChildResourceManager(ResourceManager parent, Function<String, ResourceLoader> loaderFactory,
+            Consumer<ResourceLoader> loaderDisposer) {
+        this.parent = parent;
+        this.loaderFactory = loaderFactory;
+        this.loaderDisposer = loaderDisposer;
+    }
+
+    /**
+     * Creates a child of this child, overlaying search paths on both.
+     *
+     * @return the child manager
+     */
+    public ChildResourceManager newChildManager() {
+        return new ChildResourceManager(this, loaderFactory, loaderDisposer);
+    }
+
+    /**
+     * @return the manager this child overlays
+     */
+    public ResourceManager getParent() {
+        return parent;
+    }
+
+    @Override
+    public synchronized void addSearchPath(String resourceLoaderId, String searchPath) {
+        ResourceLoader loader = overlayLoaders.get(resourceLoaderId);
+        if (loader == null) {
+            loader = loaderFactory.apply(resourceLoaderId);
+            overlayLoaders.put(resourceLoaderId, loader);
+            List<ResourceLoader> sorted = new ArrayList<>(overlayLoaders.values());
+            sorted.sort(Comparator.comparingInt(ResourceLoader::getOrdinal).reversed());
+            overlays = List.copyOf(sorted);
+        }
+        loader.addSearchPath(searchPath);
+    }
+
+    @Override
+    public synchronized void reloadSearchPath(String resourceLoaderId, String searchPath) {
+        getOverlayLoader(resourceLoaderId).reloadSearchPath(searchPath);
+    }
+
+    @Override
+    public synchronized void removeSearchPath(String resourceLoaderId, String searchPath) {
+        getOverlayLoader(resourceLoaderId).removeSearchPath(searchPath);
+    }
+
+    private ResourceLoader getOverlayLoader(String resourceLoaderId) {
+        ResourceLoader loader = overlayLoaders.get(resourceLoaderId);
+        if (loader == null) {
+            throw new IllegalArgumentException("no search path was added to resource loader " + resourceLoaderId
+                    + " in this child manager");
+        }
+        return loader;
+    }
+
+    @Override
+    public Optional<LuteceResource> findResource(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        for (ResourceLoader loader : overlays) {
+            if (loader instanceof ResourceNameFilter && !((ResourceNameFilter) loader).mightContain(name)) {
+                continue;
+            }
+            Optional<LuteceResource> resource = loader.findResource(name);
+            if (resource.isPresent()) {
+                LOGGER.debug("The resource '{}' was found in the overlay of resourceLoader '{}'", name,
+                        loader.getId());
+                return resource;
+            }
+        }
+        return parent.findResource(name);
+    }
+
+    @Override
+    public LuteceResource getResource(String name) throws ResourceNotFoundException {
+        return findResource(name).orElseThrow(() -> new ResourceNotFoundException(name));
+    }
+
+    @Override
+    public InputStream getResourceAsInputStream(String name) throws ResourceNotFoundException {
+        LuteceResource resource = getResource(name);
+        try {
+            return resource.getInputStream();
+        } catch (IOException e) {
+            throw new ResourceIOException("Failed to open resource " + resource.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public File getResourceAsFile(String name) throws ResourceNotFoundException, FileResourceCreationException {
+        return getResourceAsFile(getResource(name));
+    }
+
+    @Override
+    public File getResourceAsFile(String name, String outputPath)
+            throws ResourceNotFoundException, FileResourceCreationException {
+        if (outputPath == null) {
+            return getResourceAsFile(name);
+        }
+        LuteceResource resource = getResource(name);
+        File outputFile = outputDirectory != null ? new File(outputDirectory, outputPath) : new File(outputPath);
+        createResourceAsFile(resource, outputFile);
+        return outputFile;
+    }
+
+    @Override
+    public File getResourceAsFile(LuteceResource resource) throws FileResourceCreationException {
+        return parent.getResourceAsFile(resource);
+    }
+
+    @Override
+    public void createResourceAsFile(LuteceResource resource, File outputFile) throws FileResourceCreationException {
+        parent.createResourceAsFile(resource, outputFile);
+    }
+
+    /**
+     * Sets the directory the output paths of {@link #getResourceAsFile(String, String)} are relative to. The
+     * temporary files are still created by the parent.
+     */
+    @Override
+    public void setOutputDirectory(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    @Override
+    public Set<URL> getResourceURL(String path) throws ResourceNotFoundException {
+        for (ResourceLoader loader : overlays) {
+            try {
+                return loader.getResourceURL(path);
+            } catch (ResourceNotFoundException e) {
+                LOGGER.debug("The resource '{}' was not found in the overlay of resourceLoader '{}'", path,
+                        loader.getId());
+            }
+        }
+        return parent.getResourceURL(path);
+    }
+
+    /**
+     * Matches the glob against the overlay loaders, then against the parent.
+     */
+    @Override
+    public Stream<String> findResourceNames(String glob, boolean sorted) {
+        ResourceGlob compiled = ResourceGlob.compile(glob);
+        List<ResourceLoader> loaders = overlays;
+        Stream<Stream<String>> matches = Stream.concat(
+                loaders.stream().map(loader -> loader.matchResources(compiled)),
+                Stream.of(glob).map(pattern -> parent.findResourceNames(pattern, false)));
+        Stream<String> names = matches.flatMap(match -> match).distinct();
+        return sorted ? names.sorted() : names;
+    }
+
+    /**
+     * Lists the directory in the overlay loaders first, then in the parent.
+     */
+    @Override
+    public Stream<LuteceResource> listResources(String path) {
+        List<ResourceLoader> loaders = overlays;
+        Stream<Stream<LuteceResource>> listings = Stream.concat(
+                loaders.stream().map(loader -> loader.listResources(path)),
+                Stream.of(path).map(parent::listResources));
+        return ResourceListings.distinctFileNames(listings.flatMap(listing -> listing));
+    }
+
+    /**
+     * Releases the overlay loaders. The parent is left untouched.
+     */
+    @Override
+    public synchronized void close() {
+        for (ResourceLoader loader : overlayLoaders.values()) {
+            loaderDisposer.accept(loader);
+        }
+        overlayLoaders.clear();
+        overlays = List.of();
+    }
+}
@@ -27,9 +27,12 @@ package fr.paris.lutece.plugins.resource;
 
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.Dependent;
 import jakarta.enterprise.inject.Any;
 import jakarta.enterprise.inject.Instance;
+import jakarta.enterprise.inject.literal.NamedLiteral;
 import jakarta.inject.Inject;
 
 import java.io.File;
@@ -39,20 +42,41 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import fr.paris.lutece.plugins.resource.cache.CacheStatistics;
+import fr.paris.lutece.plugins.resource.cache.SingleFlight;
+import fr.paris.lutece.plugins.resource.cache.TimedLruCache;
 import fr.paris.lutece.plugins.resource.loader.FileResourceCreationException;
+import fr.paris.lutece.plugins.resource.loader.IndexSnapshot;
+import fr.paris.lutece.plugins.resource.loader.IndexSnapshotSupport;
 import fr.paris.lutece.plugins.resource.loader.ResourceIOException;
 import fr.paris.lutece.plugins.resource.loader.ResourceLoader;
+import fr.paris.lutece.plugins.resource.loader.ResourceNameFilter;
 import fr.paris.lutece.plugins.resource.loader.ResourceNotFoundException;
 import fr.paris.lutece.plugins.resource.util.FileUtils;
+import fr.paris.lutece.plugins.resource.util.ResourceExecutors;
+import fr.paris.lutece.plugins.resource.util.ResourceGlob;
+import fr.paris.lutece.plugins.resource.util.ResourceListings;
 
 /**
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
@@ -63,6 +87,11 @@ import fr.paris.lutece.plugins.resource.util.FileUtils;
 public class DefaultResourceManager implements ResourceManager {
     private static final Logger LOGGER = LogManager.getLogger( DefaultResourceManager.class);
 
+    /**
+     * Name of the snapshot of the loader indexes, in the output directory.
+     */
+    public static final String INDEX_SNAPSHOT_FILE = "resource-index.snapshot";
+
     private final Map<String, ResourceLoader> resourceLoaders= new LinkedHashMap<>();
 
     @Inject @Any
@@ -70,6 +99,115 @@ public class DefaultResourceManager implements ResourceManager {
     
     private File outputDirectory;
 
+    /**
+     * Maximum number of missing names remembered, zero disables the negative lookup cache.
+     */
+    @Inject
+    @ConfigProperty(name="resourceManager.negativeCache.maxSize", defaultValue="1000")
+    private Integer negativeCacheMaxSize;
+
+    /**
+     * Time, in milliseconds, during which a missing name is remembered.
+     */
+    @Inject
+    @ConfigProperty(name="resourceManager.negativeCache.ttl", defaultValue="10000")
+    private Long negativeCacheTtl;
+
+    /**
+     * Maximum number of resolved names remembered, zero disables the resolution cache.
+     */
+    @Inject
+    @ConfigProperty(name="resourceManager.resolutionCache.maxSize", defaultValue="1000")
+    private Integer resolutionCacheMaxSize;
+
+    /**
+     * Time, in milliseconds, during which a resolved name is remembered.
+     */
+    @Inject
+    @ConfigProperty(name="resourceManager.resolutionCache.ttl", defaultValue="60000")
+    private Long resolutionCacheTtl;
+
+    /**
+     * Comma separated list of <code>prefix=loaderId</code> routes, sending the names starting with a path prefix
+     * straight to a loader.
+     */
+    @Inject
+    @ConfigProperty(name="resourceManager.routes")
+    private Optional<String> routeDefinitions;
+
+    /**
+     * Routes names to their owning loader according to their scheme or prefix.
+     */
+    private final ResourceRouter router = new ResourceRouter();
+
+    /**
+     * Maximum number of concurrent tasks a batch lookup is split into.
+     */
+    @Inject
+    @ConfigProperty(name="resourceManager.batch.parallelism", defaultValue="4")
+    private Integer batchParallelism;
+
+    /**
+     * The executor running the tasks of batch lookups, the shared executor by default.
+     */
+    private Executor batchExecutor;
+
+    /**
+     * Whether the loader indexes are saved in a snapshot in the output directory, and restored from it.
+     */
+    @Inject
+    @ConfigProperty(name="resourceManager.snapshot.enabled", defaultValue="false")
+    private Boolean snapshotEnabled;
+
+    /**
+     * The snapshot of the loader indexes, read when the output directory is set.
+     */
+    private IndexSnapshot indexSnapshot;
+
+    private File indexSnapshotFile;
+
+    /**
+     * Names recently looked up without success (key = the normalized name).
+     */
+    private TimedLruCache<String, Boolean> negativeCache;
+
+    /**
+     * Names recently resolved (key = the normalized name, value = the loader and the resource it returned).
+     */
+    private TimedLruCache<String, Resolution> resolutionCache;
+
+    /**
+     * Lookups in flight (key = the normalized name).
+     */
+    private final SingleFlight<String, Optional<LuteceResource>> resolutionFlights = new SingleFlight<>();
+
+    /**
+     * Materializations in temporary files in flight (key = the normalized name).
+     */
+    private final SingleFlight<String, File> fileFlights = new SingleFlight<>();
+
+    /**
+     * Materializations in a given output file in flight (key = the normalized name and the absolute path of the file).
+     */
+    private final SingleFlight<Map.Entry<String, String>, File> outputFileFlights = new SingleFlight<>();
+
+    /**
+     * Serializes the writes of different resources to the same output file. The locks are striped by path, so that
+     * their number stays bounded.
+     */
+    private final Object[] outputFileLocks = Stream.generate(Object::new).limit(64).toArray();
+
+    /**
+     * Incremented each time the search paths change, so that a lookup started before the change does not record a
+     * stale miss.
+     */
+    private final AtomicLong searchPathGeneration = new AtomicLong();
+
+    /**
+     * Counts the loader lookups skipped thanks to a {@link ResourceNameFilter}.
+     */
+    private final LongAdder filteredLookups = new LongAdder();
+
     @PostConstruct
     public void produceResourceLoaders() {
     	// Sorts the list of ResourceLoaders by their ordinal value
@@ -79,6 +217,16 @@ public class DefaultResourceManager implements ResourceManager {
         for (ResourceLoader loader : sortedLoaders) {
         	resourceLoaders.put(loader.getId( ), loader);
         }
+        if (routeDefinitions != null && routeDefinitions.isPresent()) {
+            router.addPrefixRoutes(routeDefinitions.get());
+        }
+        if (negativeCacheMaxSize != null && negativeCacheMaxSize > 0) {
+            negativeCache = new TimedLruCache<>(negativeCacheMaxSize, negativeCacheTtl != null ? negativeCacheTtl : 0);
+        }
+        if (resolutionCacheMaxSize != null && resolutionCacheMaxSize > 0) {
+            resolutionCache = new TimedLruCache<>(resolutionCacheMaxSize,
+                    resolutionCacheTtl != null ? resolutionCacheTtl : 0);
+        }
     }
     // ----------------------------------------------------------------------
     // ResourceManager Implementation
@@ -96,7 +244,9 @@ public class DefaultResourceManager implements ResourceManager {
 
     @Override
     public File getResourceAsFile(String name) throws ResourceNotFoundException, FileResourceCreationException {
-        return getResourceAsFile(getResource(name));
+        LuteceResource resource = getResource(name);
+        // concurrent materializations of the same name share the same file
+        return fileFlights.execute(normalizeName(name), () -> getResourceAsFile(resource));
     }
 
     @Override
@@ -112,12 +262,60 @@ public class DefaultResourceManager implements ResourceManager {
         } else {
             outputFile = new File(outputPath);
         }
-        createResourceAsFile(resource, outputFile);
-        return outputFile;
+        // concurrent writers of the same resource to the same file wait for the first one, the writers of different
+        // resources to the same file write in turn
+        String path = outputFile.getAbsolutePath();
+        return outputFileFlights.execute(Map.entry(normalizeName(name), path), () -> {
+            synchronized (outputFileLocks[Math.floorMod(path.hashCode(), outputFileLocks.length)]) {
+                createResourceAsFile(resource, outputFile);
+            }
+            return outputFile;
+        });
     }
     @Override
     public void setOutputDirectory(File outputDirectory) {
         this.outputDirectory = outputDirectory;
+        if (Boolean.TRUE.equals(snapshotEnabled) && outputDirectory != null) {
+            restoreIndexSnapshot(new File(outputDirectory, INDEX_SNAPSHOT_FILE));
+        }
+    }
+
+    /**
+     * Reads the snapshot of the loader indexes, and hands it to the loaders supporting it : the search paths added
+     * from now on are restored from it when they did not change.
+     */
+    private synchronized void restoreIndexSnapshot(File file) {
+        indexSnapshotFile = file;
+        indexSnapshot = IndexSnapshot.read(file.toPath());
+        for (ResourceLoader loader : resourceLoaders.values()) {
+            if (loader instanceof IndexSnapshotSupport) {
+                ((IndexSnapshotSupport) loader).setIndexSnapshot(indexSnapshot);
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot of the loader indexes in the output directory, if it changed. It is also written when the
+     * manager is destroyed.
+     */
+    @PreDestroy
+    public synchronized void saveIndexSnapshot() {
+        if (indexSnapshot == null || !indexSnapshot.isModified()) {
+            return;
+        }
+        try {
+            indexSnapshot.write(indexSnapshotFile.toPath());
+        } catch (IOException e) {
+            LOGGER.warn("Could not write the resource index snapshot {}", indexSnapshotFile, e);
+        }
+    }
+
+    /**
+     * @return the snapshot of the loader indexes, or null if snapshots are disabled or the output directory is not
+     *         set
+     */
+    public IndexSnapshot getIndexSnapshot() {
+        return indexSnapshot;
     }
 
     @Override
@@ -129,26 +327,435 @@ public class DefaultResourceManager implements ResourceManager {
         }
 
         loader.addSearchPath(path);
+        // a new search path may shadow or reveal any name
+        invalidateAll();
+    }
+
+    @Override
+    public void reloadSearchPath(String id, String path) {
+        getResourceLoader(id).reloadSearchPath(path);
+        // the reloaded search path may have lost or gained any name
+        invalidateAll();
+    }
+
+    @Override
+    public void removeSearchPath(String id, String path) {
+        getResourceLoader(id).removeSearchPath(path);
+        invalidateAll();
+    }
+
+    /**
+     * Creates a child manager, which overlays its own search paths on this manager. Its search paths go to new
+     * instances of the loaders, and the other names are answered by this manager, with its loaders, indexes and
+     * caches. Only the {@link jakarta.enterprise.context.Dependent} loaders can be overlaid.
+     *
+     * @return the child manager, to be closed once no longer used
+     */
+    public ChildResourceManager newChildManager() {
+        return new ChildResourceManager(this, this::newOverlayLoader, resourceLoaderList::destroy);
+    }
+
+    private ResourceLoader newOverlayLoader(String id) {
+        getResourceLoader(id);
+        ResourceLoader loader = resourceLoaderList.select(NamedLiteral.of(id)).get();
+        if (loader.getClass().isAnnotationPresent(ApplicationScoped.class)) {
+            throw new IllegalArgumentException(
+                    "resource loader " + id + " is shared, its search paths can't be overlaid");
+        }
+        return loader;
+    }
+
+    private ResourceLoader getResourceLoader(String id) {
+        ResourceLoader loader = resourceLoaders.get(id);
+
+        if (loader == null) {
+            throw new IllegalArgumentException("unknown resource loader: " + id);
+        }
+        return loader;
+    }
+
+    @Override
+    public void invalidate(String name) {
+        name = normalizeName(name);
+        searchPathGeneration.incrementAndGet();
+        if (negativeCache != null) {
+            negativeCache.remove(name);
+        }
+        if (resolutionCache != null) {
+            resolutionCache.remove(name);
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        searchPathGeneration.incrementAndGet();
+        if (negativeCache != null) {
+            negativeCache.clear();
+        }
+        if (resolutionCache != null) {
+            resolutionCache.clear();
+        }
+    }
+
+    /**
+     * Returns the usage counters of the resolution cache.
+     *
+     * @return the statistics, or null if the resolution cache is disabled
+     */
+    public CacheStatistics getResolutionCacheStatistics() {
+        return resolutionCache != null ? resolutionCache.getStatistics() : null;
+    }
+
+    /**
+     * Returns the number of lookups which waited for a concurrent lookup of the same name instead of resolving it
+     * again.
+     *
+     * @return the number of coalesced lookups
+     */
+    public long getCoalescedLookupCount() {
+        return resolutionFlights.getCoalescedCount();
+    }
+
+    /**
+     * Returns the number of <code>getResourceAsFile</code> calls which waited for a concurrent materialization of the
+     * same name, to the same output file when one is given, instead of writing it again.
+     *
+     * @return the number of coalesced materializations
+     */
+    public long getCoalescedFileCount() {
+        return fileFlights.getCoalescedCount() + outputFileFlights.getCoalescedCount();
+    }
+
+    /**
+     * Returns the number of loader lookups skipped because the Bloom filter of the loader ruled the name out.
+     *
+     * @return the number of skipped lookups
+     */
+    public long getFilteredLookupCount() {
+        return filteredLookups.sum();
+    }
+
+    /**
+     * Returns the usage counters of the negative lookup cache.
+     *
+     * @return the statistics, or null if the negative lookup cache is disabled
+     */
+    public CacheStatistics getNegativeCacheStatistics() {
+        return negativeCache != null ? negativeCache.getStatistics() : null;
     }
 
     @Override
     public LuteceResource getResource(String name) throws ResourceNotFoundException {
-        for (ResourceLoader resourceLoader : resourceLoaders.values()) {
-            try {
-                LuteceResource resource = resourceLoader.getResource(name);
+        return findResource(name).orElseThrow(() -> new ResourceNotFoundException(name));
+    }
+
+    @Override
+    public Optional<LuteceResource> findResource(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        String normalized = normalizeName(name);
+        if (negativeCache != null && negativeCache.contains(normalized)) {
+            LOGGER.debug("The resource '{}' is known to be missing", normalized);
+            return Optional.empty();
+        }
+        if (resolutionCache != null) {
+            Resolution resolution = resolutionCache.get(normalized);
+            if (resolution != null) {
+                LOGGER.debug("The resource '{}' was resolved by resourceLoader '{}'", normalized,
+                        resolution.loaderId);
+                return Optional.of(resolution.resource);
+            }
+        }
+        // concurrent lookups of the same name wait for the first one
+        return resolutionFlights.execute(normalized, () -> resolve(normalized, name));
+    }
 
-                LOGGER.debug("The resource '{}' was found as '{}'", name, resource.getName());
+    /**
+     * Resolves a name through its routed loader, or through every loader in ordinal order, and caches the outcome
+     * under its normalized form. The loaders are given the name as requested.
+     */
+    private Optional<LuteceResource> resolve(String normalized, String name) {
+        long generation = searchPathGeneration.get();
+
+        ResourceRouter.Route route = router.route(name);
+        ResourceLoader routedLoader = route != null ? resourceLoaders.get(route.getResourceLoaderId()) : null;
+        if (routedLoader != null) {
+            String loaderName = route.toLoaderName(name);
+            Optional<LuteceResource> resource = mightContain(routedLoader, loaderName)
+                    ? routedLoader.findResource(loaderName)
+                    : Optional.empty();
+            LOGGER.debug("The resource '{}' was routed to resourceLoader '{}', found : {}", name,
+                    routedLoader.getId(), resource.isPresent());
+            cacheResolution(normalized, routedLoader, resource, generation);
+            return resource;
+        }
+
+        for (ResourceLoader resourceLoader : resourceLoaders.values()) {
+            if (!mightContain(resourceLoader, name)) {
+                continue;
+            }
+            Optional<LuteceResource> resource = resourceLoader.findResource(name);
+            if (resource.isPresent()) {
+                LOGGER.debug("The resource '{}' was found as '{}'", name, resource.get().getName());
 
+                cacheResolution(normalized, resourceLoader, resource, generation);
                 return resource;
-            } catch (ResourceNotFoundException e) {
-                LOGGER.debug(
-                        "The resource '{}' was not found with resourceLoader '{}'",
-                        name,
-                        resourceLoader.getClass().getName());
             }
+            LOGGER.debug(
+                    "The resource '{}' was not found with resourceLoader '{}'",
+                    name,
+                    resourceLoader.getClass().getName());
         }
 
-        throw new ResourceNotFoundException(name);
+        cacheResolution(normalized, null, Optional.empty(), generation);
+        return Optional.empty();
+    }
+
+    @Override
+    public ResourceBatchResult getResources(Collection<String> names) {
+        // requested name -> normalized name
+        Map<String, String> requested = new LinkedHashMap<>();
+        Map<String, Resolution> resolutions = new HashMap<>();
+        // normalized name -> the first requested name, given to the loaders
+        Map<String, String> pending = new LinkedHashMap<>();
+        for (String name : names) {
+            String normalized = normalizeName(name);
+            requested.put(name, normalized);
+            if (normalized == null || (negativeCache != null && negativeCache.contains(normalized))) {
+                continue;
+            }
+            Resolution resolution = resolutionCache != null ? resolutionCache.get(normalized) : null;
+            if (resolution != null) {
+                resolutions.put(normalized, resolution);
+            } else {
+                pending.putIfAbsent(normalized, name);
+            }
+        }
+        long generation = searchPathGeneration.get();
+
+        // routed names go to their loader only, the others are split into chunks resolved by the whole chain
+        Map<ResourceLoader, Map<String, String>> routed = new LinkedHashMap<>();
+        List<String> unrouted = new ArrayList<>();
+        pending.forEach((normalized, name) -> {
+            ResourceRouter.Route route = router.route(name);
+            ResourceLoader routedLoader = route != null ? resourceLoaders.get(route.getResourceLoaderId()) : null;
+            if (routedLoader != null) {
+                routed.computeIfAbsent(routedLoader, l -> new LinkedHashMap<>()).put(route.toLoaderName(name),
+                        normalized);
+            } else {
+                unrouted.add(normalized);
+            }
+        });
+        List<Supplier<Map<String, Resolution>>> tasks = new ArrayList<>();
+        routed.forEach((loader, loaderNames) -> tasks.add(() -> resolveRouted(loader, loaderNames)));
+        int parallelism = batchParallelism != null && batchParallelism > 0 ? batchParallelism : 1;
+        int chunkSize = Math.max(1, (unrouted.size() + parallelism - 1) / parallelism);
+        for (int i = 0; i < unrouted.size(); i += chunkSize) {
+            Map<String, String> chunk = new LinkedHashMap<>();
+            for (String normalized : unrouted.subList(i, Math.min(unrouted.size(), i + chunkSize))) {
+                chunk.put(pending.get(normalized), normalized);
+            }
+            tasks.add(() -> resolveChain(chunk));
+        }
+        runAll(tasks).forEach(resolutions::putAll);
+
+        Map<String, LuteceResource> resources = new LinkedHashMap<>();
+        Set<String> missingNames = new LinkedHashSet<>();
+        for (String name : pending.keySet()) {
+            Resolution resolution = resolutions.get(name);
+            if (resolution != null) {
+                cacheResolution(name, resourceLoaders.get(resolution.loaderId), Optional.of(resolution.resource),
+                        generation);
+            } else {
+                cacheResolution(name, null, Optional.empty(), generation);
+            }
+        }
+        requested.forEach((name, normalized) -> {
+            Resolution resolution = normalized != null ? resolutions.get(normalized) : null;
+            if (resolution != null) {
+                resources.put(name, resolution.resource);
+            } else {
+                missingNames.add(name);
+            }
+        });
+        LOGGER.debug("Batch lookup of {} names : {} found, {} missing", requested.size(), resources.size(),
+                missingNames.size());
+        return new ResourceBatchResult(resources, missingNames);
+    }
+
+    /**
+     * Sets the executor running the tasks of batch lookups.
+     *
+     * @param executor the executor, or null to use the shared executor
+     */
+    public void setBatchExecutor(Executor executor) {
+        this.batchExecutor = executor;
+    }
+
+    private Map<String, Resolution> resolveRouted(ResourceLoader loader, Map<String, String> loaderNames) {
+        Map<String, Resolution> resolutions = new HashMap<>();
+        List<String> candidates = new ArrayList<>();
+        for (String loaderName : loaderNames.keySet()) {
+            if (mightContain(loader, loaderName)) {
+                candidates.add(loaderName);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return resolutions;
+        }
+        loader.findResources(candidates).forEach(
+                (loaderName, resource) -> resolutions.put(loaderNames.get(loaderName),
+                        new Resolution(loader.getId(), resource)));
+        return resolutions;
+    }
+
+    private Map<String, Resolution> resolveChain(Map<String, String> names) {
+        Map<String, Resolution> resolutions = new HashMap<>();
+        Set<String> remaining = new LinkedHashSet<>(names.keySet());
+        for (ResourceLoader resourceLoader : resourceLoaders.values()) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            List<String> candidates = new ArrayList<>();
+            for (String name : remaining) {
+                if (mightContain(resourceLoader, name)) {
+                    candidates.add(name);
+                }
+            }
+            if (candidates.isEmpty()) {
+                continue;
+            }
+            resourceLoader.findResources(candidates).forEach((name, resource) -> {
+                resolutions.put(names.get(name), new Resolution(resourceLoader.getId(), resource));
+                remaining.remove(name);
+            });
+        }
+        return resolutions;
+    }
+
+    /**
+     * Consults the Bloom filter of a loader, if it has one.
+     */
+    private boolean mightContain(ResourceLoader loader, String name) {
+        if (loader instanceof ResourceNameFilter && !((ResourceNameFilter) loader).mightContain(name)) {
+            filteredLookups.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs the tasks, concurrently on the batch executor when there are several of them.
+     */
+    private <T> List<T> runAll(List<Supplier<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() == 1) {
+            results.add(tasks.get(0).get());
+            return results;
+        }
+        Executor executor = batchExecutor != null ? batchExecutor : ResourceExecutors.sharedExecutor();
+        List<CompletableFuture<T>> futures = new ArrayList<>(tasks.size());
+        for (Supplier<T> task : tasks) {
+            futures.add(CompletableFuture.supplyAsync(ResourceExecutors.withContextClassLoader(task), executor));
+        }
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Records the outcome of a lookup, unless the search paths have changed since it started.
+     */
+    private void cacheResolution(String name, ResourceLoader loader, Optional<LuteceResource> resource,
+            long generation) {
+        if (generation != searchPathGeneration.get()) {
+            return;
+        }
+        if (resource.isPresent()) {
+            if (resolutionCache != null) {
+                resolutionCache.put(name, new Resolution(loader.getId(), resource.get()));
+            }
+        } else if (negativeCache != null) {
+            negativeCache.put(name, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Sends the names starting with the given path prefix straight to a resource loader.
+     *
+     * @param prefix the path prefix
+     * @param resourceLoaderId the ID of the resource loader
+     */
+    public void addRoute(String prefix, String resourceLoaderId) {
+        if (!resourceLoaders.containsKey(resourceLoaderId)) {
+            throw new IllegalArgumentException("unknown resource loader: " + resourceLoaderId);
+        }
+        router.addPrefixRoute(prefix, resourceLoaderId);
+        invalidateAll();
+    }
+
+    /**
+     * Normalizes a resource name into the key of its cache entries, so that the different spellings of a same name
+     * share them : <code>./</code> segments are removed and repeated slashes are collapsed, except after a URL
+     * scheme, at the start of a UNC path, and in a query string or a fragment. The loaders are still given the name as
+     * requested.
+     *
+     * @param name the name of the resource
+     * @return the normalized name
+     */
+    static String normalizeName(String name) {
+        if (name == null || (name.indexOf("//") < 0 && name.indexOf("./") < 0)) {
+            return name;
+        }
+        int end = name.length();
+        for (int i = 0; i < end; i++) {
+            char c = name.charAt(i);
+            if (c == '?' || c == '#') {
+                end = i;
+            }
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        int i = 0;
+        if (name.startsWith("//")) {
+            // keep the leading slashes of "//server/share"
+            sb.append("//");
+            i = 2;
+        }
+        while (i < end) {
+            char c = name.charAt(i);
+            boolean segmentStart = i == 0 || name.charAt(i - 1) == '/';
+            if (c == '.' && segmentStart && i + 1 < end && name.charAt(i + 1) == '/') {
+                // skip the "./" segment
+                i += 2;
+                continue;
+            }
+            if (c == '/') {
+                int slashes = i;
+                while (slashes < end && name.charAt(slashes) == '/') {
+                    slashes++;
+                }
+                if (sb.length() > 0 && sb.charAt(sb.length() - 1) == ':') {
+                    // keep the slashes of "scheme://" or "file:///"
+                    sb.append(name, i, slashes);
+                } else {
+                    sb.append('/');
+                }
+                i = slashes;
+                continue;
+            }
+            sb.append(c);
+            i++;
+        }
+        return sb.append(name, end, name.length()).toString();
     }
 
     @Override
@@ -184,6 +791,11 @@ public class DefaultResourceManager implements ResourceManager {
 
 	@Override
 	public Set<URL> getResourceURL(String path) throws ResourceNotFoundException {
+		 ResourceRouter.Route route = router.route(path);
+		 ResourceLoader routedLoader = route != null ? resourceLoaders.get(route.getResourceLoaderId()) : null;
+		 if (routedLoader != null) {
+			 return routedLoader.getResourceURL(route.toLoaderName(path));
+		 }
 		 for (ResourceLoader resourceLoader : resourceLoaders.values()) {
 	            try {
 	                Set<URL> resource = resourceLoader.getResourceURL(path);
@@ -199,4 +811,53 @@ public class DefaultResourceManager implements ResourceManager {
 
 	        throw new ResourceNotFoundException(path);
 	}	
+
+    /**
+     * Lists a routed directory from its loader only, any other directory from every loader in precedence order.
+     */
+    @Override
+    public Stream<LuteceResource> listResources(String path) {
+        ResourceRouter.Route route = router.route(path);
+        ResourceLoader routedLoader = route != null ? resourceLoaders.get(route.getResourceLoaderId()) : null;
+        if (routedLoader != null) {
+            return routedLoader.listResources(route.toLoaderName(path));
+        }
+        List<ResourceLoader> loaders = List.copyOf(resourceLoaders.values());
+        return ResourceListings.distinctFileNames(loaders.stream().flatMap(loader -> loader.listResources(path)));
+    }
+
+    /**
+     * Matches a routed glob against its loader only, any other glob against every loader.
+     */
+    @Override
+    public Stream<String> findResourceNames(String glob, boolean sorted) {
+        ResourceRouter.Route route = router.route(glob);
+        ResourceLoader routedLoader = route != null ? resourceLoaders.get(route.getResourceLoaderId()) : null;
+        Stream<String> names;
+        if (routedLoader != null) {
+            // the names are given back with the scheme or prefix stripped from the glob, so that they route the same
+            String loaderGlob = route.toLoaderName(glob);
+            String prefix = glob.endsWith(loaderGlob) ? glob.substring(0, glob.length() - loaderGlob.length()) : "";
+            names = routedLoader.matchResources(ResourceGlob.compile(loaderGlob)).map(name -> prefix + name);
+        } else {
+            ResourceGlob compiled = ResourceGlob.compile(glob);
+            List<ResourceLoader> loaders = List.copyOf(resourceLoaders.values());
+            names = loaders.stream().flatMap(loader -> loader.matchResources(compiled)).distinct();
+        }
+        return sorted ? names.sorted() : names;
+    }
+
+    /**
+     * A cached resolution : the resource found for a name, and the loader which found it.
+     */
+    private static final class Resolution {
+        private final String loaderId;
+
+        private final LuteceResource resource;
+
+        private Resolution(String loaderId, LuteceResource resource) {
+            this.loaderId = loaderId;
+            this.resource = resource;
+        }
+    }
 }
@@ -0,0 +1,77 @@
+package fr.paris.lutece.plugins.resource;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The outcome of a batch lookup : the resources found, by requested name, and the names which could not be found.
+ */
+public class ResourceBatchResult {
+    private final Map<String, LuteceResource> resources;
+
+    private final Set<String> missingNames;
+
+    public ResourceBatchResult(Map<String, LuteceResource> resources, Set<String> missingNames) {
+        this.resources = Collections.unmodifiableMap(resources);
+        this.missingNames = Collections.unmodifiableSet(missingNames);
+    }
+
+    /**
+     * @return the resources found, keyed by the requested name, in the request order
+     */
+    public Map<String, LuteceResource> getResources() {
+        return resources;
+    }
+
+    /**
+     * @return the requested names which could not be found
+     */
+    public Set<String> getMissingNames() {
+        return missingNames;
+    }
+
+    /**
+     * Returns the resource found for the given name.
+     *
+     * @param name the requested name
+     * @return the resource, or null if it was not found or not requested
+     */
+    public LuteceResource getResource(String name) {
+        return resources.get(name);
+    }
+
+    /**
+     * @return true if every requested name was found
+     */
+    public boolean isComplete() {
+        return missingNames.isEmpty();
+    }
+}
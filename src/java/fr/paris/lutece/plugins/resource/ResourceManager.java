@@ -29,10 +29,18 @@ package fr.paris.lutece.plugins.resource;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import fr.paris.lutece.plugins.resource.loader.FileResourceCreationException;
 import fr.paris.lutece.plugins.resource.loader.ResourceNotFoundException;
+import fr.paris.lutece.plugins.resource.loader.URLLuteceResource;
+import fr.paris.lutece.plugins.resource.util.ResourceGlob;
 
 /**
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
@@ -87,6 +95,44 @@ public interface ResourceManager {
      */
     void addSearchPath(String resourceLoaderId, String searchPath);
 
+    /**
+     * Reloads a search path of the resource loader with the specified ID, e.g. after a JAR was redeployed.
+     *
+     * @param resourceLoaderId the ID of the resource loader
+     * @param searchPath the search path to reload
+     * @throws UnsupportedOperationException if the manager can't reload search paths
+     */
+    default void reloadSearchPath(String resourceLoaderId, String searchPath) {
+        throw new UnsupportedOperationException("reloadSearchPath");
+    }
+
+    /**
+     * Removes a search path from the resource loader with the specified ID.
+     *
+     * @param resourceLoaderId the ID of the resource loader
+     * @param searchPath the search path to remove
+     * @throws UnsupportedOperationException if the manager or the loader can't remove search paths
+     */
+    default void removeSearchPath(String resourceLoaderId, String searchPath) {
+        throw new UnsupportedOperationException("removeSearchPath");
+    }
+
+    /**
+     * Forgets any cached lookup result for the given resource name, so that the next lookup resolves it again.
+     *
+     * @param name the name of the resource
+     */
+    default void invalidate(String name) {
+        // nothing cached by default
+    }
+
+    /**
+     * Forgets every cached lookup result.
+     */
+    default void invalidateAll() {
+        // nothing cached by default
+    }
+
     /**
      * Searches for a resource with the given name and returns a corresponding LuteceResource object.
      *
@@ -96,6 +142,43 @@ public interface ResourceManager {
      */
     LuteceResource getResource(String name) throws ResourceNotFoundException;
 
+    /**
+     * Searches for a resource with the given name, without throwing when it is missing.
+     *
+     * @param name the name of the resource to search for
+     * @return the LuteceResource found with the specified name, or an empty optional if it cannot be found
+     */
+    default Optional<LuteceResource> findResource(String name) {
+        try {
+            return Optional.of(getResource(name));
+        } catch (ResourceNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Searches for several resources at once.
+     * <p>
+     * The default implementation looks the names up one after the other; implementations may resolve them
+     * concurrently.
+     *
+     * @param names the names of the resources to search for
+     * @return the resources found, by requested name, and the names which could not be found
+     */
+    default ResourceBatchResult getResources(Collection<String> names) {
+        Map<String, LuteceResource> resources = new LinkedHashMap<>();
+        Set<String> missingNames = new LinkedHashSet<>();
+        for (String name : names) {
+            Optional<LuteceResource> resource = findResource(name);
+            if (resource.isPresent()) {
+                resources.put(name, resource.get());
+            } else {
+                missingNames.add(name);
+            }
+        }
+        return new ResourceBatchResult(resources, missingNames);
+    }
+
     /**
      * Retrieves a file with the given resource's contents. If the resource is already available as a file,
      * returns that file. Otherwise, a file in the resource manager's output directory is created,
@@ -129,4 +212,65 @@ public interface ResourceManager {
      *                                    the directory or converting paths to URLs.
      */
     Set<URL> getResourceURL(String path) throws ResourceNotFoundException;
-}
\ No newline at end of file
+
+    /**
+     * Lists the resources found directly in a directory, across all the resource loaders. When several loaders hold
+     * a file with the same name, only the one of the loader with the highest precedence is listed.
+     * <p>
+     * The listing is produced lazily : each loader is only asked for its resources when the consumer of the stream
+     * reaches them, and no loader builds the whole listing in memory beforehand. The stream should be closed once
+     * consumed.
+     * <p>
+     * The default implementation wraps the URLs of {@link #getResourceURL(String)}.
+     *
+     * @param path The directory path.
+     * @return The resources of the directory, empty if there is none.
+     */
+    default Stream<LuteceResource> listResources(String path) {
+        try {
+            return getResourceURL(path).stream().map(URLLuteceResource::new);
+        } catch (ResourceNotFoundException e) {
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Lists the names of the resources matching a glob, such as <code>templates/**&#47;*.html</code>, across all the
+     * resource loaders. See {@link ResourceGlob} for the syntax.
+     * <p>
+     * The loaders answer from their in-memory indexes when they have some, and otherwise walk their search paths from
+     * the literal base directory of the glob, no deeper than the glob allows. Unsorted, the names are produced lazily;
+     * sorted, every name is gathered first. The stream should be closed once consumed.
+     *
+     * @param glob The glob.
+     * @param sorted Whether the names are sorted.
+     * @return The distinct matching names.
+     * @throws UnsupportedOperationException if the manager can't enumerate its resources
+     */
+    default Stream<String> findResourceNames(String glob, boolean sorted) {
+        throw new UnsupportedOperationException("findResourceNames");
+    }
+
+    /**
+     * Finds the resources matching a glob, in no particular order. See {@link #findResources(String, boolean)}.
+     *
+     * @param glob The glob.
+     * @return The matching resources, lazily.
+     */
+    default Stream<LuteceResource> findResources(String glob) {
+        return findResources(glob, false);
+    }
+
+    /**
+     * Finds the resources matching a glob. Each name matched is resolved as by {@link #findResource(String)}, so the
+     * resource of the loader with the highest precedence is returned.
+     *
+     * @param glob The glob.
+     * @param sorted Whether the resources are sorted by name.
+     * @return The matching resources, resolved lazily.
+     * @see #findResourceNames(String, boolean)
+     */
+    default Stream<LuteceResource> findResources(String glob, boolean sorted) {
+        return findResourceNames(glob, sorted).map(this::findResource).flatMap(Optional::stream);
+    }
+}
@@ -0,0 +1,208 @@
+package fr.paris.lutece.plugins.resource;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import fr.paris.lutece.plugins.resource.loader.FileResourceLoader;
+import fr.paris.lutece.plugins.resource.loader.ServletContextResourceLoader;
+import fr.paris.lutece.plugins.resource.loader.ThreadContextClasspathResourceLoader;
+import fr.paris.lutece.plugins.resource.loader.URLResourceLoader;
+
+/**
+ * Maps resource names to the loader which owns them, according to their scheme (<code>classpath:</code>,
+ * <code>file:</code>, <code>jar:</code>, <code>http:</code>, <code>https:</code>, <code>servlet:</code>) or to
+ * configured path prefixes. Names which match no route are resolved by every loader, in ordinal order.
+ */
+public class ResourceRouter {
+    public static final String SCHEME_CLASSPATH = "classpath:";
+    public static final String SCHEME_FILE = "file:";
+    public static final String SCHEME_JAR = "jar:";
+    public static final String SCHEME_HTTP = "http:";
+    public static final String SCHEME_HTTPS = "https:";
+    public static final String SCHEME_SERVLET = "servlet:";
+
+    /**
+     * The routes, the longest prefixes first. The list is replaced, never modified, when a route is added.
+     */
+    private volatile List<Route> routes = Collections.emptyList();
+
+    /**
+     * Creates a router with the default scheme routes.
+     */
+    public ResourceRouter() {
+        addRoute(new Route(SCHEME_CLASSPATH, ThreadContextClasspathResourceLoader.ID, true, true));
+        addRoute(new Route(SCHEME_SERVLET, ServletContextResourceLoader.ID, true, true));
+        addRoute(new Route(SCHEME_FILE, FileResourceLoader.ID, true, true));
+        addRoute(new Route(SCHEME_JAR, URLResourceLoader.ID, true, false));
+        addRoute(new Route(SCHEME_HTTP, URLResourceLoader.ID, true, false));
+        addRoute(new Route(SCHEME_HTTPS, URLResourceLoader.ID, true, false));
+    }
+
+    /**
+     * Routes the names starting with the given path prefix to a loader. The prefix is kept in the name given to the
+     * loader.
+     *
+     * @param prefix the path prefix
+     * @param resourceLoaderId the ID of the resource loader
+     */
+    public void addPrefixRoute(String prefix, String resourceLoaderId) {
+        if (prefix == null || prefix.isEmpty() || resourceLoaderId == null || resourceLoaderId.isEmpty()) {
+            throw new IllegalArgumentException("invalid route: " + prefix + "=" + resourceLoaderId);
+        }
+        addRoute(new Route(prefix, resourceLoaderId, false, false));
+    }
+
+    /**
+     * Adds the prefix routes defined by a configuration value, a comma separated list of <code>prefix=loaderId</code>
+     * entries.
+     *
+     * @param definitions the route definitions
+     */
+    public void addPrefixRoutes(String definitions) {
+        if (definitions == null) {
+            return;
+        }
+        for (String definition : definitions.split(",")) {
+            definition = definition.trim();
+            if (definition.isEmpty()) {
+                continue;
+            }
+            int index = definition.lastIndexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("invalid route: " + definition);
+            }
+            addPrefixRoute(definition.substring(0, index).trim(), definition.substring(index + 1).trim());
+        }
+    }
+
+    private synchronized void addRoute(Route route) {
+        List<Route> newRoutes = new ArrayList<>(routes);
+        newRoutes.removeIf(r -> r.prefix.equals(route.prefix));
+        newRoutes.add(route);
+        // the longest prefix wins
+        newRoutes.sort(Comparator.comparingInt((Route r) -> r.prefix.length()).reversed());
+        routes = Collections.unmodifiableList(newRoutes);
+    }
+
+    /**
+     * Returns the route matching the given name.
+     *
+     * @param name the name of the resource
+     * @return the matching route, or null if the name must be resolved by every loader
+     */
+    public Route route(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (Route route : routes) {
+            if (route.matches(name)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the routes, the longest prefixes first.
+     *
+     * @return the routes
+     */
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * A route from a scheme or a path prefix to a resource loader.
+     */
+    public static final class Route {
+        private final String prefix;
+
+        private final String resourceLoaderId;
+
+        private final boolean scheme;
+
+        private final boolean stripPrefix;
+
+        private Route(String prefix, String resourceLoaderId, boolean scheme, boolean stripPrefix) {
+            this.prefix = prefix;
+            this.resourceLoaderId = resourceLoaderId;
+            this.scheme = scheme;
+            this.stripPrefix = stripPrefix;
+        }
+
+        private boolean matches(String name) {
+            // schemes are case insensitive
+            return name.regionMatches(scheme, 0, prefix, 0, prefix.length());
+        }
+
+        /**
+         * @return the scheme or path prefix
+         */
+        public String getPrefix() {
+            return prefix;
+        }
+
+        /**
+         * @return the ID of the resource loader owning the matching names
+         */
+        public String getResourceLoaderId() {
+            return resourceLoaderId;
+        }
+
+        /**
+         * Returns the name to give to the resource loader.
+         *
+         * @param name the name of the resource, matching this route
+         * @return the name understood by the resource loader
+         */
+        public String toLoaderName(String name) {
+            if (!stripPrefix) {
+                return name;
+            }
+            if (SCHEME_FILE.equals(prefix)) {
+                try {
+                    return new File(URI.create(name)).getPath();
+                } catch (IllegalArgumentException e) {
+                    // not a hierarchical file URI, e.g. "file:dir/file.txt"
+                }
+            }
+            return name.substring(prefix.length());
+        }
+
+        @Override
+        public String toString() {
+            return prefix + "=" + resourceLoaderId;
+        }
+    }
+}
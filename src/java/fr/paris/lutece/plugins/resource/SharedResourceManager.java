@@ -0,0 +1,44 @@
+package fr.paris.lutece.plugins.resource;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * The application wide {@link ResourceManager}, injected with the {@link Shared} qualifier.
+ * <p>
+ * A {@link DefaultResourceManager} is {@link jakarta.enterprise.context.Dependent} : each injection point gets its own
+ * loaders, caches and JAR indexes, and adding a search path only affects it. This manager is created once, so its
+ * loaders, their indexes and open JARs, and its caches are shared by every injection point. Code which needs extra
+ * search paths without affecting the others uses {@link #newChildManager()}, whose overlay costs only the search paths
+ * it adds.
+ * </p>
+ */
+@Shared
+@ApplicationScoped
+public class SharedResourceManager extends DefaultResourceManager {
+}
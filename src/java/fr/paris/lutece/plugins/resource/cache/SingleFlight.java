@@ -0,0 +1,130 @@
+package fr.paris.lutece.plugins.resource.cache;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent computations of the same key : while a computation is in flight, the other callers asking
+ * for the same key wait for its outcome instead of starting their own.
+ * <p>
+ * Nothing is remembered once a computation completes, caching the outcome is left to the caller.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the computed values
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * A computation which may throw a checked exception.
+     *
+     * @param <V> the type of the computed value
+     * @param <E> the type of the checked exception
+     */
+    @FunctionalInterface
+    public interface Computation<V, E extends Exception> {
+        V compute() throws E;
+    }
+
+    /**
+     * Computes the value of a key, or waits for the computation already in flight for the same key.
+     *
+     * @param <E> the type of the checked exception thrown by the computation
+     * @param key the key
+     * @param computation the computation, only called if none is in flight for the key
+     * @return the computed value
+     * @throws E if the computation failed, the waiting callers receive the same exception
+     */
+    public <E extends Exception> V execute(K key, Computation<V, E> computation) throws E {
+        calls.increment();
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+        try {
+            V value = computation.compute();
+            flight.complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> V await(CompletableFuture<V> flight) throws E {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // only the checked exception of the computation can be thrown
+            throw (E) cause;
+        }
+    }
+
+    /**
+     * @return the number of calls to {@link #execute(Object, Computation)}
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * @return the number of calls which waited for a computation in flight instead of starting their own
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the number of computations currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,193 @@
+package fr.paris.lutece.plugins.resource.cache;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A small thread safe cache, bounded in size and whose entries expire after a fixed time to live.
+ * <p>
+ * When the cache is full, the least recently accessed entry is evicted. Expired entries are dropped lazily, when
+ * they are looked up.
+ * </p>
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public class TimedLruCache<K, V> {
+    private final int maxSize;
+
+    private final long ttlNanos;
+
+    private final LongSupplier ticker;
+
+    private final Map<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxSize the maximum number of entries kept in the cache
+     * @param ttlMillis the time to live of an entry, in milliseconds; zero or less means entries never expire
+     */
+    public TimedLruCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::nanoTime);
+    }
+
+    /**
+     * Creates a new cache using the given time source.
+     *
+     * @param maxSize the maximum number of entries kept in the cache
+     * @param ttlMillis the time to live of an entry, in milliseconds; zero or less means entries never expire
+     * @param ticker the time source, in nanoseconds
+     */
+    TimedLruCache(int maxSize, long ttlMillis, LongSupplier ticker) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMillis) : 0;
+        this.ticker = ticker;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > TimedLruCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the value cached for the given key.
+     *
+     * @param key the key
+     * @return the cached value, or null if there is none or if it has expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (ttlNanos > 0 && ticker.getAsLong() - entry.createdAt >= ttlNanos) {
+            entries.remove(key);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Tells whether a live value is cached for the given key.
+     *
+     * @param key the key
+     * @return true if a value is cached and has not expired
+     */
+    public boolean contains(K key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Caches a value, replacing any previous value for the same key.
+     *
+     * @param key the key
+     * @param value the value, must not be null
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, ticker.getAsLong()));
+    }
+
+    /**
+     * Removes the value cached for the given key, if any.
+     *
+     * @param key the key
+     */
+    public synchronized void remove(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes every cached value.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of entries held, including expired entries which have not been dropped yet.
+     *
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the maximum number of entries.
+     *
+     * @return the maximum number of entries
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns a snapshot of the usage counters of this cache.
+     *
+     * @return the cache statistics
+     */
+    public synchronized CacheStatistics getStatistics() {
+        return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), entries.size(), maxSize);
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+
+        private final long createdAt;
+
+        private Entry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -27,22 +27,26 @@ package fr.paris.lutece.plugins.resource.loader;
 
 
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
  * @version $Id$
  */
 public abstract class AbstractResourceLoader implements ResourceLoader {
-    protected final List<String> paths = new ArrayList<>();
+    private final CopyOnWriteArrayList<String> searchPaths = new CopyOnWriteArrayList<>();
+
+    /**
+     * The search paths. Each change publishes a new copy of the list, so iterating over it needs no lock and is never
+     * disturbed by a concurrent {@link #addSearchPath(String)}.
+     */
+    protected final List<String> paths = searchPaths;
 
     @Override
     public void addSearchPath(String path) {
-        if (!paths.contains(path)) {
-            paths.add(path);
-        }
+        searchPaths.addIfAbsent(path);
     }
     @Override
 	public Set<URL> getResourceURL(String path) throws ResourceNotFoundException {
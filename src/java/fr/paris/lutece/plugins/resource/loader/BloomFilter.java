@@ -0,0 +1,155 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+/**
+ * A compact set of resource names answering membership queries with false positives but no false negatives : when
+ * {@link #mightContain(String)} returns false, the name was never added.
+ * <p>
+ * The filter is sized for an expected number of names and a false positive probability. It is filled by a single
+ * thread, then published and only read.
+ */
+public final class BloomFilter {
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private final double falsePositiveProbability;
+
+    private BloomFilter(long bitCount, int hashCount, double falsePositiveProbability) {
+        this.bits = new long[(int) ((bitCount + 63) / 64)];
+        this.bitCount = bits.length * 64L;
+        this.hashCount = hashCount;
+        this.falsePositiveProbability = falsePositiveProbability;
+    }
+
+    /**
+     * Creates an empty filter.
+     *
+     * @param expectedNames the number of names expected to be added
+     * @param falsePositiveProbability the wanted false positive probability, between 0 and 1 exclusive
+     * @return the filter
+     * @throws IllegalArgumentException if the probability is out of range
+     */
+    public static BloomFilter create(int expectedNames, double falsePositiveProbability) {
+        if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+            throw new IllegalArgumentException("Invalid false positive probability : " + falsePositiveProbability);
+        }
+        int n = Math.max(1, expectedNames);
+        long m = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (LN2 * LN2)));
+        if (m > Integer.MAX_VALUE * 64L) {
+            m = Integer.MAX_VALUE * 64L;
+        }
+        int k = Math.max(1, (int) Math.round((double) m / n * LN2));
+        return new BloomFilter(m, k, falsePositiveProbability);
+    }
+
+    /**
+     * Adds a name.
+     *
+     * @param name the name
+     */
+    public void put(String name) {
+        long hash = hash(name);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Tells whether a name might have been added.
+     *
+     * @param name the name
+     * @return false if the name was certainly not added, true if it probably was
+     */
+    public boolean mightContain(String name) {
+        long hash = hash(name);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of bits of the filter
+     */
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * @return the number of bits set per name
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return the false positive probability the filter was sized for
+     */
+    public double getFalsePositiveProbability() {
+        return falsePositiveProbability;
+    }
+
+    /**
+     * 64 bits FNV-1a over the characters of the name.
+     */
+    private static long hash(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The finalization step of MurmurHash3, spreading every input bit over the whole output.
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53a13b5L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
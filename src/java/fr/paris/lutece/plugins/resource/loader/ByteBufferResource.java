@@ -0,0 +1,48 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import fr.paris.lutece.plugins.resource.LuteceResource;
+
+/**
+ * A resource whose content may be read without any copy, as a buffer. The resources of memory-mapped JARs implement
+ * it, whether they are obtained from the {@link MappedJarHolder}, the {@link JarResourceLoader} or a resource manager.
+ */
+public interface ByteBufferResource extends LuteceResource {
+
+    /**
+     * Returns the content of the resource without any copy, if it is stored uncompressed.
+     *
+     * @return a read-only buffer, or null if the content can only be read through {@link #getInputStream()}
+     * @throws IOException if the content can't be read
+     */
+    ByteBuffer getBuffer() throws IOException;
+}
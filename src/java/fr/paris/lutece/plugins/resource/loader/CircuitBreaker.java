@@ -0,0 +1,198 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the health of a remote root, so that a root which keeps failing is skipped instead of being waited on.
+ * <p>
+ * The circuit is <em>closed</em> while the calls succeed. It opens after a number of consecutive failures, and
+ * rejects every call for a while. Then it is <em>half open</em> : a single trial call is let through, which closes
+ * the circuit if it succeeds, and opens it again otherwise.
+ * </p>
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of a circuit.
+     */
+    public enum State {
+        /** The calls are let through. */
+        CLOSED,
+        /** The calls are rejected. */
+        OPEN,
+        /** A single trial call is let through. */
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private State state = State.CLOSED;
+
+    private int failures;
+
+    private long openedAt;
+
+    private boolean trialInProgress;
+
+    /**
+     * Creates a closed circuit.
+     *
+     * @param failureThreshold the number of consecutive failures opening the circuit
+     * @param openMillis the time, in milliseconds, during which an open circuit rejects the calls
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Asks for the permission to make a call, as a permit which ends the call when closed if no outcome was recorded,
+     * so that a call failing unexpectedly can't leave a half open circuit waiting for its trial forever.
+     *
+     * @return the permit, or null if the call is rejected
+     */
+    public synchronized Permit acquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.CLOSED) {
+            return new Permit(false);
+        }
+        if (state == State.HALF_OPEN && !trialInProgress) {
+            trialInProgress = true;
+            return new Permit(true);
+        }
+        rejected.increment();
+        return null;
+    }
+
+    /**
+     * Ends a call which succeeded, closing the circuit.
+     */
+    private synchronized void succeeded(boolean trial) {
+        if (trial) {
+            trialInProgress = false;
+        }
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    /**
+     * Ends a call which failed. The circuit opens if the call was the trial of a half open circuit, or if the failures
+     * of a closed circuit reach the threshold. A call permitted before the circuit opened changes nothing once it is.
+     */
+    private synchronized void failed(boolean trial) {
+        if (trial) {
+            trialInProgress = false;
+        } else if (state != State.CLOSED) {
+            return;
+        }
+        if (trial || ++failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            failures = 0;
+        }
+    }
+
+    /**
+     * Ends a call whose outcome says nothing about the health of the root.
+     */
+    private synchronized void released(boolean trial) {
+        if (trial) {
+            trialInProgress = false;
+        }
+    }
+
+    /**
+     * @return the state of the circuit; an open circuit whose open time is over is reported half open
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * @return the number of calls rejected because the circuit was open, or half open with a trial in progress
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * The permission to make a call. Only the first outcome recorded counts.
+     */
+    public final class Permit implements AutoCloseable {
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        /**
+         * Whether this permit is the trial of a half open circuit, the only one which can end the trial.
+         */
+        private final boolean trial;
+
+        private Permit(boolean trial) {
+            this.trial = trial;
+        }
+
+        /**
+         * Ends the call, which succeeded.
+         */
+        public void onSuccess() {
+            if (ended.compareAndSet(false, true)) {
+                succeeded(trial);
+            }
+        }
+
+        /**
+         * Ends the call, which failed.
+         */
+        public void onFailure() {
+            if (ended.compareAndSet(false, true)) {
+                failed(trial);
+            }
+        }
+
+        /**
+         * Ends the call without any outcome, unless one was recorded.
+         */
+        @Override
+        public void close() {
+            if (ended.compareAndSet(false, true)) {
+                released(trial);
+            }
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * An in-memory index of the resources visible through a class loader, so that looking a name up is a hash probe
+ * instead of a linear scan over every jar of the class path.
+ * <p>
+ * The URLs of the class loader and of its parents (directories and jars, including the jars referenced by a
+ * <code>Class-Path</code> manifest attribute) are enumerated once, in the order of the delegation, and each resource
+ * name is mapped to the first location holding it, which is the one <code>ClassLoader.getResource</code> would return.
+ * The delegation is parent-first, except for the class loaders exposing a <code>getDelegate()</code> accessor, such as
+ * the Tomcat web application class loader, which search their own URLs first when it returns false. The other class
+ * loaders known to be child-first, such as the Jetty web application class loader, are not indexed. The per-name
+ * delegation rules of the containers (e.g. the Jakarta API names always delegated by Tomcat) are not followed. The
+ * resources of the JDK modules, owned by the platform and bootstrap class loaders, are not indexed.
+ * <p>
+ * The jars are taken as immutable, while the files added to an indexed directory (e.g. <code>WEB-INF/classes</code>)
+ * after the index was built are still found : a name the index does not hold is looked up in the directories. A file
+ * added to a directory does not shadow a location indexed before.
+ * <p>
+ * Indexes are cached per class loader in a weak map, so that a redeployed web application does not keep its
+ * predecessor's index alive. Each index is built outside of the lock of the map, the lookups of the same class loader
+ * waiting for it. Only class loaders whose URLs can be enumerated are indexed : a chain holding a class loader that is
+ * neither a <code>URLClassLoader</code> nor the system class loader, or a remote URL, has no index.
+ */
+public final class ClasspathIndex {
+    private static final Logger LOGGER = LogManager.getLogger(ClasspathIndex.class);
+    private static final String PROTOCOL_FILE = "file";
+    private static final Map<ClassLoader, CompletableFuture<Optional<ClasspathIndex>>> INDEXES = new WeakHashMap<>();
+
+    /**
+     * The class names of the child-first class loaders which do not tell their delegation order.
+     */
+    private static final Set<String> CHILD_FIRST_CLASS_LOADERS = Set.of("org.eclipse.jetty.webapp.WebAppClassLoader",
+            "org.eclipse.jetty.ee8.webapp.WebAppClassLoader", "org.eclipse.jetty.ee9.webapp.WebAppClassLoader",
+            "org.eclipse.jetty.ee10.webapp.WebAppClassLoader", "org.eclipse.jetty.ee11.webapp.WebAppClassLoader");
+
+    private final String[] roots;
+    private final Map<String, Integer> locations;
+
+    /**
+     * The indexed directories, in the order of the delegation, with the position of their URL in {@link #roots}.
+     */
+    private final Path[] directories;
+    private final int[] directoryRoots;
+
+    private ClasspathIndex(List<String> roots, Map<String, Integer> locations, Map<Path, Integer> directories) {
+        this.roots = roots.toArray(new String[0]);
+        this.locations = locations;
+        this.directories = directories.keySet().toArray(new Path[0]);
+        this.directoryRoots = directories.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the index of a class loader, building it on the first call.
+     *
+     * @param classLoader the class loader
+     * @return the index, or an empty optional when the URLs of the class loader cannot be enumerated
+     */
+    public static Optional<ClasspathIndex> forClassLoader(ClassLoader classLoader) {
+        CompletableFuture<Optional<ClasspathIndex>> index;
+        CompletableFuture<Optional<ClasspathIndex>> built = null;
+        synchronized (INDEXES) {
+            index = INDEXES.get(classLoader);
+            if (index == null) {
+                built = new CompletableFuture<>();
+                INDEXES.put(classLoader, built);
+                index = built;
+            }
+        }
+        if (built != null) {
+            try {
+                built.complete(build(classLoader));
+            } catch (RuntimeException | Error e) {
+                synchronized (INDEXES) {
+                    INDEXES.remove(classLoader, built);
+                }
+                built.completeExceptionally(e);
+                throw e;
+            }
+        }
+        return index.join();
+    }
+
+    /**
+     * Drops the cached index of a class loader, so that the next lookup enumerates its URLs again.
+     *
+     * @param classLoader the class loader
+     */
+    public static void invalidate(ClassLoader classLoader) {
+        synchronized (INDEXES) {
+            INDEXES.remove(classLoader);
+        }
+    }
+
+    /**
+     * Finds the location of a resource. The index holds the files of the jars and directories; a directory is only
+     * found in the indexed directories, so the names ending with a slash are better looked up through the class
+     * loader.
+     *
+     * @param name the resource name, without a leading slash
+     * @return the URL of the resource, or <code>null</code> when no indexed location holds it
+     */
+    public URL find(String name) {
+        Integer root = locations.get(name);
+        if (root != null) {
+            return resolve(roots[root], name);
+        }
+        for (int i = 0; i < directories.length; i++) {
+            Path file = resolve(directories[i], name);
+            if (!file.equals(directories[i]) && Files.exists(file)) {
+                return resolve(roots[directoryRoots[i]], name);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Resolves a resource name against a directory, the way <code>URLClassLoader</code> does.
+     *
+     * @return the file, or the directory itself when the name escapes it
+     */
+    private static Path resolve(Path directory, String name) {
+        try {
+            Path file = directory.resolve(name).normalize();
+            return file.startsWith(directory) ? file : directory;
+        } catch (InvalidPathException e) {
+            return directory;
+        }
+    }
+
+    /**
+     * Builds the URL of a resource from the URL of its directory or jar, the way <code>URLClassLoader</code> does.
+     *
+     * @param root the URL of the directory, or the <code>jar:...!/</code> URL of the jar
+     * @param name the resource name
+     * @return the URL, or <code>null</code> when the name cannot be encoded
+     */
+    static URL resolve(String root, String name) {
+        try {
+            return new URL(root + new URI(null, null, name, null).getRawPath());
+        } catch (MalformedURLException | URISyntaxException e) {
+            LOGGER.debug("ClasspathIndex : cannot build the URL of '{}'", name, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the indexed resource names, in no particular order
+     */
+    public Stream<String> names() {
+        return locations.keySet().stream();
+    }
+
+    /**
+     * @return the number of indexed resource names
+     */
+    public int size() {
+        return locations.size();
+    }
+
+    /**
+     * @return the number of indexed directories and jars
+     */
+    public int getRootCount() {
+        return roots.length;
+    }
+
+    private static Optional<ClasspathIndex> build(ClassLoader classLoader) {
+        List<URL> urls = getClassPath(classLoader);
+        if (urls == null) {
+            LOGGER.info("ClasspathIndex : the URLs of {} cannot be enumerated, it is not indexed", classLoader);
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        List<String> roots = new ArrayList<>();
+        Map<String, Integer> locations = new HashMap<>();
+        Map<Path, Integer> directories = new LinkedHashMap<>();
+        Deque<URL> pending = new ArrayDeque<>(urls);
+        Set<String> seen = new HashSet<>();
+        try {
+            while (!pending.isEmpty()) {
+                URL url = pending.poll();
+                if (!PROTOCOL_FILE.equals(url.getProtocol())) {
+                    LOGGER.info("ClasspathIndex : {} is not a local URL, {} is not indexed", url, classLoader);
+                    return Optional.empty();
+                }
+                Path path = Paths.get(url.toURI()).toAbsolutePath().normalize();
+                if (!seen.add(path.toString())) {
+                    continue;
+                }
+                Integer root = roots.size();
+                if (Files.isDirectory(path)) {
+                    roots.add(path.toUri().toURL().toExternalForm());
+                    directories.put(path, root);
+                    indexDirectory(path, root, locations);
+                } else if (Files.isRegularFile(path)) {
+                    URL jarUrl = path.toUri().toURL();
+                    roots.add("jar:" + jarUrl.toExternalForm() + "!/");
+                    List<URL> referenced = indexJar(path, jarUrl, root, locations);
+                    // the jars of a Class-Path attribute are searched right after the jar referencing them
+                    for (int i = referenced.size() - 1; i >= 0; i--) {
+                        pending.addFirst(referenced.get(i));
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException | URISyntaxException | IllegalArgumentException e) {
+            LOGGER.warn("ClasspathIndex : failed to index {}", classLoader, e);
+            return Optional.empty();
+        }
+        LOGGER.debug("ClasspathIndex : {} resources indexed in {} locations in {} ms", locations.size(), roots.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return Optional.of(new ClasspathIndex(roots, locations, directories));
+    }
+
+    /**
+     * Lists the URLs searched by a class loader chain, in the order of the delegation.
+     *
+     * @return the URLs, or <code>null</code> when one of the class loaders cannot be enumerated
+     */
+    private static List<URL> getClassPath(ClassLoader classLoader) {
+        if (classLoader == null || classLoader == ClassLoader.getPlatformClassLoader()) {
+            return new ArrayList<>();
+        }
+        List<URL> own = getURLs(classLoader);
+        Boolean parentFirst = own != null ? isParentFirst(classLoader) : null;
+        List<URL> parents = parentFirst != null ? getClassPath(classLoader.getParent()) : null;
+        if (parents == null) {
+            return null;
+        }
+        if (parentFirst) {
+            parents.addAll(own);
+            return parents;
+        }
+        own.addAll(parents);
+        return own;
+    }
+
+    /**
+     * Lists the URLs of a single class loader.
+     *
+     * @return the URLs, or <code>null</code> when the class loader cannot be enumerated
+     */
+    private static List<URL> getURLs(ClassLoader loader) {
+        List<URL> urls = new ArrayList<>();
+        if (loader instanceof URLClassLoader) {
+            Collections.addAll(urls, ((URLClassLoader) loader).getURLs());
+        } else if (loader == ClassLoader.getSystemClassLoader()) {
+            for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                if (!entry.isEmpty()) {
+                    try {
+                        urls.add(Paths.get(entry).toUri().toURL());
+                    } catch (MalformedURLException | IllegalArgumentException e) {
+                        return null;
+                    }
+                }
+            }
+        } else {
+            return null;
+        }
+        return urls;
+    }
+
+    /**
+     * Tells the delegation order of a class loader, from its public <code>getDelegate()</code> accessor when it has
+     * one.
+     *
+     * @return true for a parent-first class loader, false for a child-first one, or <code>null</code> when the order
+     *         is not known
+     */
+    private static Boolean isParentFirst(ClassLoader loader) {
+        if (CHILD_FIRST_CLASS_LOADERS.contains(loader.getClass().getName())) {
+            LOGGER.info("ClasspathIndex : {} is a child-first class loader, it is not indexed", loader);
+            return null;
+        }
+        try {
+            Method delegate = loader.getClass().getMethod("getDelegate");
+            if (delegate.getReturnType() == boolean.class) {
+                return (Boolean) delegate.invoke(loader);
+            }
+        } catch (NoSuchMethodException e) {
+            // a class loader delegating parent-first
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.info("ClasspathIndex : the delegation order of {} is not known, it is not indexed", loader, e);
+            return null;
+        }
+        return Boolean.TRUE;
+    }
+
+    private static void indexDirectory(Path directory, Integer root, Map<String, Integer> locations)
+            throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                StringBuilder name = new StringBuilder();
+                for (Path element : directory.relativize(file)) {
+                    if (name.length() > 0) {
+                        name.append('/');
+                    }
+                    name.append(element);
+                }
+                locations.putIfAbsent(name.toString(), root);
+            });
+        }
+    }
+
+    private static List<URL> indexJar(Path path, URL jarUrl, Integer root, Map<String, Integer> locations)
+            throws IOException {
+        try (JarFile jar = new JarFile(path.toFile(), false)) {
+            jar.stream().filter(entry -> !entry.isDirectory()).map(JarEntry::getName)
+                    .forEach(name -> locations.putIfAbsent(name, root));
+            Manifest manifest = jar.getManifest();
+            String classPath = manifest != null ? manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH)
+                    : null;
+            if (classPath == null) {
+                return Collections.emptyList();
+            }
+            List<URL> referenced = new ArrayList<>();
+            for (String entry : classPath.trim().split("\\s+")) {
+                if (!entry.isEmpty()) {
+                    referenced.add(new URL(jarUrl, entry));
+                }
+            }
+            return referenced;
+        }
+    }
+}
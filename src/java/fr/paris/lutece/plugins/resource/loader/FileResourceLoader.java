@@ -25,6 +25,8 @@ package fr.paris.lutece.plugins.resource.loader;
  * 
  * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
  */
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.Dependent;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
@@ -36,14 +38,27 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.ResourceExecutors;
+import fr.paris.lutece.plugins.resource.util.ResourceGlob;
+import fr.paris.lutece.plugins.resource.util.ResourceListings;
 
 /**
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
@@ -52,30 +67,279 @@ import fr.paris.lutece.plugins.resource.LuteceResource;
  */
 @Named(FileResourceLoader.ID)
 @Dependent
-public class FileResourceLoader extends AbstractResourceLoader {
+public class FileResourceLoader extends AbstractResourceLoader implements ResourceNameFilter {
     public static final String ID = "file";
 
     @Inject
     @ConfigProperty(name="ordinalValue.resourceLoader.file", defaultValue="300")
     private Integer ordinalValue;
+
+    /**
+     * Whether the search paths are indexed in memory instead of being probed on each lookup.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.file.indexed", defaultValue="false")
+    private Boolean indexed;
+
+    /**
+     * Interval, in milliseconds, between two full rescans of the indexed search paths.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.file.rescanInterval", defaultValue="60000")
+    private Long rescanInterval;
+
+    /**
+     * The false positive probability of the Bloom filter of the indexed names; zero disables the filter.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.bloomFilter.fpp", defaultValue="0.01")
+    private Double bloomFilterFpp;
+
+    private volatile FileSearchPathIndex index;
+
+    /**
+     * The Bloom filter of the indexed names, and the modification count of the index it was built at.
+     */
+    private volatile IndexFilter filter;
+
+    /**
+     * Bumped whenever the search paths, the index or the false positive probability change, so that a filter built
+     * before is known stale whatever its modification count.
+     */
+    private final AtomicLong filterGeneration = new AtomicLong();
+
+    /**
+     * Set while a stale filter is built again in the background, so that it is built once whatever the lookups.
+     */
+    private final AtomicBoolean filterRebuilding = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        if (Boolean.TRUE.equals(indexed)) {
+            enableIndex(rescanInterval != null ? rescanInterval : 0);
+        }
+    }
+
+    /**
+     * Switches to the indexed mode : the search paths are scanned once, then kept current by file system events and
+     * periodic rescans, and lookups no longer probe the file system.
+     *
+     * @param rescanIntervalMillis the interval between two full rescans, in milliseconds; zero or less disables them
+     */
+    public synchronized void enableIndex(long rescanIntervalMillis) {
+        if (index != null) {
+            return;
+        }
+        FileSearchPathIndex newIndex = new FileSearchPathIndex(rescanIntervalMillis);
+        for (String path : paths) {
+            newIndex.addSearchPath(path);
+        }
+        index = newIndex;
+        filterGeneration.incrementAndGet();
+        rebuildFilter();
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (index != null) {
+            index.close();
+            index = null;
+        }
+        filterGeneration.incrementAndGet();
+        filter = null;
+    }
+
+    @Override
+    public synchronized void addSearchPath(String path) {
+        super.addSearchPath(path);
+        if (index != null) {
+            index.addSearchPath(path);
+        }
+        filterGeneration.incrementAndGet();
+        rebuildFilter();
+    }
+
+    /**
+     * Sets the false positive probability of the Bloom filter of the indexed names.
+     *
+     * @param falsePositiveProbability the probability, between 0 and 1 exclusive, or zero to disable the filter
+     */
+    public synchronized void setBloomFilterFpp(double falsePositiveProbability) {
+        this.bloomFilterFpp = falsePositiveProbability;
+        filterGeneration.incrementAndGet();
+        rebuildFilter();
+    }
+
+    /**
+     * Answers from a Bloom filter of the index. Once the indexed names change, the filter is built again once in the
+     * background, and every name might be held until it is. Without an index, or when a search path is not indexed,
+     * every name might be held.
+     */
+    @Override
+    public boolean mightContain(String name) {
+        FileSearchPathIndex currentIndex = index;
+        if (currentIndex == null || name == null || bloomFilterFpp == null
+                || !(bloomFilterFpp > 0 && bloomFilterFpp < 1) || new File(name).isAbsolute()) {
+            return true;
+        }
+        String indexName = FileSearchPathIndex.toIndexName(name);
+        if (indexName == null) {
+            return true;
+        }
+        IndexFilter current = filter;
+        if (current == null || current.index != currentIndex || current.generation != filterGeneration.get()
+                || current.modifications != currentIndex.getModificationCount()) {
+            rebuildFilterLater();
+            return true;
+        }
+        return current.filter == null || current.filter.mightContain(indexName);
+    }
+
+    /**
+     * Builds the filter again on the shared executor, unless a build is already running.
+     */
+    private void rebuildFilterLater() {
+        if (!filterRebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            ResourceExecutors.sharedExecutor().execute(() -> {
+                try {
+                    rebuildFilter();
+                } finally {
+                    filterRebuilding.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            filterRebuilding.set(false);
+        }
+    }
+
+    /**
+     * Builds the filter of the current index and search paths. A search path which is not indexed yet gives a filter
+     * which holds every name.
+     */
+    private void rebuildFilter() {
+        FileSearchPathIndex currentIndex = index;
+        Double fpp = bloomFilterFpp;
+        if (currentIndex == null || fpp == null || !(fpp > 0 && fpp < 1)) {
+            filter = null;
+            return;
+        }
+        // the generation and the names are read after the modification count, so a change meanwhile makes the filter
+        // built again
+        long modifications = currentIndex.getModificationCount();
+        long generation = filterGeneration.get();
+        List<String> searchPaths = paths;
+        BloomFilter built = null;
+        if (searchPaths.stream().allMatch(currentIndex::isIndexed)) {
+            built = BloomFilter.create(currentIndex.size(), fpp);
+            for (String path : searchPaths) {
+                currentIndex.getNames(path).forEach(built::put);
+            }
+        }
+        filter = new IndexFilter(currentIndex, generation, modifications, built);
+    }
+
     // ----------------------------------------------------------------------
     // ResourceLoader Implementation
     // ----------------------------------------------------------------------
 
     @Override
     public LuteceResource getResource(String name) throws ResourceNotFoundException {
+        return findResource(name).orElseThrow(() -> new ResourceNotFoundException(name));
+    }
+
+    @Override
+    public Optional<LuteceResource> findResource(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        FileSearchPathIndex currentIndex = index;
+        String indexName = currentIndex != null ? FileSearchPathIndex.toIndexName(name) : null;
         for (String path : paths) {
-            final File file = new File(path, name);
+            final File file = lookup(currentIndex, path, name, indexName);
 
-            if (file.canRead()) {
-                return new FileLuteceResource(file);
+            if (file != null) {
+                return Optional.of(new FileLuteceResource(file));
             }
         }
         File file = new File(name);
         if (file.isAbsolute() && file.canRead()) {
-            return new FileLuteceResource(file);
+            return Optional.of(new FileLuteceResource(file));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Looks the names up search path by search path, so that each directory is probed for the whole batch before the
+     * next one.
+     */
+    @Override
+    public Map<String, LuteceResource> findResources(Collection<String> names) {
+        Map<String, LuteceResource> resources = new LinkedHashMap<>();
+        Set<String> remaining = new LinkedHashSet<>(names);
+        remaining.remove(null);
+        FileSearchPathIndex currentIndex = index;
+        for (String path : paths) {
+            for (Iterator<String> it = remaining.iterator(); it.hasNext();) {
+                String name = it.next();
+                String indexName = currentIndex != null ? FileSearchPathIndex.toIndexName(name) : null;
+                final File file = lookup(currentIndex, path, name, indexName);
+
+                if (file != null) {
+                    resources.put(name, new FileLuteceResource(file));
+                    it.remove();
+                }
+            }
         }
-        throw new ResourceNotFoundException(name);
+        for (String name : remaining) {
+            File file = new File(name);
+            if (file.isAbsolute() && file.canRead()) {
+                resources.put(name, new FileLuteceResource(file));
+            }
+        }
+        return resources;
+    }
+
+    /**
+     * Looks a name up in a search path, through the index when the search path is indexed.
+     *
+     * @return the file, or null if it doesn't exist
+     */
+    private File lookup(FileSearchPathIndex currentIndex, String path, String name, String indexName) {
+        if (indexName != null && currentIndex.isIndexed(path)) {
+            return currentIndex.contains(path, indexName) ? new File(path, name) : null;
+        }
+        final File file = new File(path, name);
+        return file.canRead() ? file : null;
+    }
+
+    /**
+     * Lists the directory in each search path in turn, opening each directory only when the listing reaches it.
+     */
+    @Override
+    public Stream<LuteceResource> listResources(String path) {
+        String prefix = ResourceListings.toDirectoryPrefix(path);
+        return ResourceListings.distinctFileNames(paths.stream()
+                .flatMap(searchPath -> ResourceListings.listFiles(new File(searchPath, prefix).toPath()))
+                .map(file -> new FileLuteceResource(file.toFile())));
+    }
+
+    /**
+     * Matches the glob against the index of the indexed search paths, and walks the other ones from the base directory
+     * of the glob.
+     */
+    @Override
+    public Stream<String> matchResources(ResourceGlob glob) {
+        FileSearchPathIndex currentIndex = index;
+        return paths.stream().flatMap(path -> {
+            if (currentIndex != null && currentIndex.isIndexed(path)) {
+                return currentIndex.getNames(path).stream().filter(glob::matches);
+            }
+            return ResourceListings.walkNames(Paths.get(path, glob.getBase()), glob.getBase(), glob.getMaxDepth())
+                    .filter(glob::matches);
+        }).distinct();
     }
 
 	@Override
@@ -125,4 +389,22 @@ public class FileResourceLoader extends AbstractResourceLoader {
             throw new ResourceNotFoundException("Error during path conversion to URL : " + path, e);
         }
     }
+
+    /**
+     * A Bloom filter of the names of an index, at a given generation and modification count; a null filter holds every
+     * name.
+     */
+    private static final class IndexFilter {
+        private final FileSearchPathIndex index;
+        private final long generation;
+        private final long modifications;
+        private final BloomFilter filter;
+
+        private IndexFilter(FileSearchPathIndex index, long generation, long modifications, BloomFilter filter) {
+            this.index = index;
+            this.generation = generation;
+            this.modifications = modifications;
+            this.filter = filter;
+        }
+    }
 }
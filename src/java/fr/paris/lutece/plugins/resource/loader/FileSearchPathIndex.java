@@ -0,0 +1,378 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import fr.paris.lutece.plugins.resource.util.ResourceExecutors;
+
+/**
+ * An in-memory index of the files found under a set of search paths, so that looking a name up is a hash probe
+ * instead of a <code>stat</code> call per search path.
+ * <p>
+ * Each search path is scanned once when added. The index is then kept current with the events of a
+ * {@link WatchService}, and fully rescanned periodically for the file systems which do not emit events, such as NFS.
+ * </p>
+ */
+public class FileSearchPathIndex implements Closeable {
+    private static final Logger LOGGER = LogManager.getLogger(FileSearchPathIndex.class);
+
+    /**
+     * The indexed search paths (key = the search path as given to the loader).
+     */
+    private final Map<String, RootIndex> roots = new ConcurrentHashMap<>();
+
+    /**
+     * The watched directories (key = the watch key, value = the search path index and the directory).
+     */
+    private final Map<WatchKey, WatchedDirectory> watchedDirectories = new ConcurrentHashMap<>();
+
+    private final WatchService watchService;
+
+    private final Thread watcher;
+
+    private final ScheduledExecutorService rescanner;
+
+    private volatile boolean closed;
+
+    /**
+     * Incremented after each change of the indexed names, so that the summaries derived from them know when to be
+     * built again.
+     */
+    private final AtomicLong modifications = new AtomicLong();
+
+    /**
+     * Creates a new index.
+     *
+     * @param rescanIntervalMillis the interval between two full rescans, in milliseconds; zero or less disables the
+     *            periodic rescan
+     */
+    public FileSearchPathIndex(long rescanIntervalMillis) {
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.warn("FileSearchPathIndex : file system events are not available, relying on periodic rescans", e);
+        }
+        watchService = service;
+        if (watchService != null) {
+            watcher = ResourceExecutors.daemonThreadFactory("lutece-resources-file-watcher").newThread(this::watch);
+            watcher.start();
+        } else {
+            watcher = null;
+        }
+        if (rescanIntervalMillis > 0) {
+            rescanner = Executors.newSingleThreadScheduledExecutor(
+                    ResourceExecutors.daemonThreadFactory("lutece-resources-file-rescan"));
+            rescanner.scheduleWithFixedDelay(this::rescan, rescanIntervalMillis, rescanIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            rescanner = null;
+        }
+    }
+
+    /**
+     * Indexes a search path, scanning it once.
+     *
+     * @param searchPath the search path
+     */
+    public void addSearchPath(String searchPath) {
+        RootIndex root = new RootIndex(Paths.get(searchPath).toAbsolutePath().normalize());
+        if (roots.putIfAbsent(searchPath, root) == null) {
+            root.scan();
+        }
+    }
+
+    /**
+     * Returns the number of changes of the indexed names so far. A summary of the names built after reading a given
+     * count is current as long as the count does not change.
+     *
+     * @return the modification count
+     */
+    public long getModificationCount() {
+        return modifications.get();
+    }
+
+    /**
+     * @return the number of names indexed under every search path
+     */
+    public int size() {
+        int size = 0;
+        for (RootIndex root : roots.values()) {
+            size += root.names.size();
+        }
+        return size;
+    }
+
+    /**
+     * Tells whether a file is indexed under the given search path.
+     *
+     * @param searchPath the search path
+     * @param name the name of the file, relative to the search path, with '/' separators
+     * @return true if the file exists according to the index, false if it doesn't or if the search path is not indexed
+     */
+    public boolean contains(String searchPath, String name) {
+        RootIndex root = roots.get(searchPath);
+        return root != null && root.names.contains(name);
+    }
+
+    /**
+     * Tells whether the given search path is indexed.
+     *
+     * @param searchPath the search path
+     * @return true if the search path is indexed
+     */
+    public boolean isIndexed(String searchPath) {
+        return roots.containsKey(searchPath);
+    }
+
+    /**
+     * Returns the names indexed under a search path.
+     *
+     * @param searchPath the search path
+     * @return the names of the files, relative to the search path, with '/' separators
+     */
+    public Set<String> getNames(String searchPath) {
+        RootIndex root = roots.get(searchPath);
+        return root != null ? Collections.unmodifiableSet(root.names) : Collections.emptySet();
+    }
+
+    /**
+     * Converts a resource name to the form used by the index.
+     *
+     * @param name the name of the resource
+     * @return the indexed form of the name, or null if the name cannot be answered by the index (e.g. it goes up
+     *         with "..")
+     */
+    public static String toIndexName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String indexName = name.replace('\\', '/');
+        while (indexName.startsWith("/")) {
+            indexName = indexName.substring(1);
+        }
+        if (indexName.isEmpty() || indexName.contains("..") || indexName.contains("./") || indexName.contains("//")) {
+            return null;
+        }
+        return indexName;
+    }
+
+    /**
+     * Rescans every search path, replacing the indexed names at once.
+     */
+    public void rescan() {
+        for (RootIndex root : roots.values()) {
+            if (closed) {
+                return;
+            }
+            root.scan();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (rescanner != null) {
+            rescanner.shutdownNow();
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOGGER.debug("FileSearchPathIndex : failed to close the watch service", e);
+            }
+        }
+    }
+
+    private void watch() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            WatchedDirectory directory = watchedDirectories.get(key);
+            if (directory != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    directory.root.onEvent(directory.path, event);
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+
+    private static final class WatchedDirectory {
+        private final RootIndex root;
+
+        private final Path path;
+
+        private WatchedDirectory(RootIndex root, Path path) {
+            this.root = root;
+            this.path = path;
+        }
+    }
+
+    /**
+     * The index of a single search path.
+     */
+    private final class RootIndex {
+        private final Path root;
+
+        private volatile Set<String> names = ConcurrentHashMap.newKeySet();
+
+        private RootIndex(Path root) {
+            this.root = root;
+        }
+
+        /**
+         * Scans the whole search path, then publishes the new set of names.
+         */
+        private void scan() {
+            Set<String> scanned = ConcurrentHashMap.newKeySet();
+            scanInto(root, scanned);
+            names = scanned;
+            modifications.incrementAndGet();
+            LOGGER.debug("FileSearchPathIndex : {} files indexed in '{}'", scanned.size(), root);
+        }
+
+        /**
+         * Walks a directory, following the symbolic links as <code>File.canRead()</code> does, and adds the names of its
+         * regular files. A link back to one of its parent directories is skipped.
+         */
+        private void scanInto(Path start, Set<String> target) {
+            if (!Files.isDirectory(start)) {
+                return;
+            }
+            try {
+                Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                        new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        register(dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isRegularFile()) {
+                            target.add(toName(file));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        if (e instanceof FileSystemLoopException) {
+                            LOGGER.debug("FileSearchPathIndex : '{}' links to one of its parents, it is skipped", file);
+                        } else {
+                            LOGGER.debug("FileSearchPathIndex : cannot visit '{}'", file, e);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                LOGGER.warn("FileSearchPathIndex : failed to scan '{}'", start, e);
+            }
+        }
+
+        private void register(Path dir) {
+            if (watchService == null || closed) {
+                return;
+            }
+            try {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, new WatchedDirectory(this, dir));
+            } catch (IOException | ClosedWatchServiceException e) {
+                LOGGER.debug("FileSearchPathIndex : cannot watch '{}'", dir, e);
+            }
+        }
+
+        private void onEvent(Path dir, WatchEvent<?> event) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // some events were lost
+                scan();
+                return;
+            }
+            Path path = dir.resolve((Path) event.context());
+            String name = toName(path);
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                if (Files.isDirectory(path)) {
+                    // files may have been created before the new directory was watched
+                    scanInto(path, names);
+                } else if (Files.isRegularFile(path)) {
+                    names.add(name);
+                }
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                names.remove(name);
+                String prefix = name + "/";
+                names.removeIf(n -> n.startsWith(prefix));
+            }
+            modifications.incrementAndGet();
+        }
+
+        private String toName(Path file) {
+            String name = root.relativize(file).toString();
+            return file.getFileSystem().getSeparator().equals("/") ? name : name.replace('\\', '/');
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.NoSuchFileException;
+
+import fr.paris.lutece.plugins.resource.LuteceResource;
+
+/**
+ * Implementation of {@link LuteceResource} for resources fetched over HTTP. Nothing is downloaded until a stream is
+ * opened : the first stream reads the cached body when the probe which found the resource confirmed it, and every
+ * other stream {@linkplain HttpResourceFetcher#get(URI) gets} it again, so that an unchanged body is read from the
+ * disk cache after a single <code>304 Not Modified</code> round trip, or none in the refresh-ahead mode.
+ */
+public class HttpLuteceResource extends URLLuteceResource {
+    private final HttpResourceFetcher fetcher;
+    private final URI uri;
+    private HttpResourceFetcher.Entry fetched;
+
+    /**
+     * Creates a resource.
+     *
+     * @param url the URL of the resource
+     * @param uri the URI of the resource
+     * @param fetcher the fetcher used to revalidate the resource
+     * @param fetched the cache entry confirmed when the resource was found, or null
+     */
+    public HttpLuteceResource(URL url, URI uri, HttpResourceFetcher fetcher, HttpResourceFetcher.Entry fetched) {
+        super(url);
+        this.uri = uri;
+        this.fetcher = fetcher;
+        this.fetched = fetched;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        HttpResourceFetcher.Entry entry;
+        synchronized (this) {
+            entry = fetched;
+            fetched = null;
+        }
+        if (entry == null) {
+            entry = fetch();
+        }
+        try {
+            return entry.openStream();
+        } catch (NoSuchFileException e) {
+            // the entry was evicted by another download before it was opened
+            return fetch().openStream();
+        }
+    }
+
+    private HttpResourceFetcher.Entry fetch() throws IOException {
+        return fetcher.get(uri).orElseThrow(() -> new FileNotFoundException(uri.toString()));
+    }
+}
@@ -0,0 +1,797 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import fr.paris.lutece.plugins.resource.util.ResourceExecutors;
+
+/**
+ * Fetches remote resources with a shared {@link HttpClient}, and keeps their bodies in a local disk cache so that an
+ * unchanged resource costs a single conditional request answered by <code>304 Not Modified</code>.
+ * <p>
+ * The client keeps its connections open between requests, negotiates HTTP/2 when enabled and offered by the server,
+ * and bounds the time spent connecting and waiting for each response. Each cache entry is a single file holding the
+ * validators of the response (<code>ETag</code> and <code>Last-Modified</code>) followed by its body, replaced
+ * atomically when a new body is downloaded, so that a reader never sees the validators of one body with another.
+ * <p>
+ * In the {@linkplain #enableRefreshAhead(Duration, Duration, int, int) refresh-ahead mode}, a cached copy is served
+ * without any request until its hard time to live, and revalidated in the background once its soft time to live is
+ * over, so that the request threads do not wait on the network once a resource was fetched. Whatever the mode, a
+ * cached copy is served when its revalidation fails, unless {@link #setServeStaleOnError(boolean)} says otherwise.
+ * The number of concurrent requests to each host can be {@linkplain #setMaxConcurrentRequestsPerHost(int) limited}.
+ */
+public class HttpResourceFetcher {
+    private static final Logger LOGGER = LogManager.getLogger(HttpResourceFetcher.class);
+
+    private static final int ENTRY_MAGIC = 0x4c524843;
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    private final HttpClient client;
+
+    private final Duration requestTimeout;
+
+    private final Path cacheDirectory;
+
+    private final LongAdder downloads = new LongAdder();
+
+    private final LongAdder revalidations = new LongAdder();
+
+    private final LongAdder probes = new LongAdder();
+
+    private final LongAdder refreshes = new LongAdder();
+
+    private final LongAdder rejectedRefreshes = new LongAdder();
+
+    private final LongAdder staleServed = new LongAdder();
+
+    /**
+     * The URIs whose background refresh is queued or running.
+     */
+    private final Set<URI> refreshing = ConcurrentHashMap.newKeySet();
+
+    private volatile ThreadPoolExecutor refreshExecutor;
+
+    private volatile long softTtl;
+
+    private volatile long hardTtl;
+
+    private volatile boolean serveStaleOnError = true;
+
+    private volatile int maxConcurrentRequestsPerHost;
+
+    /**
+     * The permits of the requests to each host, when their number is limited.
+     */
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    private final LongAdder bulkheadRejections = new LongAdder();
+
+    private volatile long maxCacheSize;
+
+    private volatile long maxCacheAge;
+
+    /**
+     * The total size of the cache entries, kept up to date as they are written and deleted.
+     */
+    private final AtomicLong cacheSize = new AtomicLong();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a fetcher.
+     *
+     * @param connectTimeout the maximum time to establish a connection
+     * @param requestTimeout the maximum time to wait for the response of a request
+     * @param http2 whether HTTP/2 is negotiated with the servers offering it
+     * @param cacheDirectory the directory of the disk cache, created if missing with access restricted to its owner
+     *        where the file system supports it
+     * @throws IOException if the cache directory can't be created
+     */
+    public HttpResourceFetcher(Duration connectTimeout, Duration requestTimeout, boolean http2, Path cacheDirectory)
+            throws IOException {
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.requestTimeout = requestTimeout;
+        this.cacheDirectory = Files.isDirectory(cacheDirectory) ? cacheDirectory
+                : Files.createDirectories(cacheDirectory, ownerOnly());
+        try (Stream<Path> entries = listEntries()) {
+            cacheSize.set(entries.mapToLong(HttpResourceFetcher::sizeOf).sum());
+        }
+    }
+
+    /**
+     * Creates a new cache directory in the temporary directory, which only its owner can access on the file systems
+     * supporting it. Unlike a fixed path, it can't be prepared in advance by another user of the host.
+     *
+     * @return the directory
+     * @throws IOException if the directory can't be created
+     */
+    public static Path createTemporaryCacheDirectory() throws IOException {
+        return Files.createTempDirectory("lutece-resources-http-cache", ownerOnly());
+    }
+
+    private static FileAttribute<?>[] ownerOnly() {
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[] {
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")) };
+        }
+        return new FileAttribute<?>[0];
+    }
+
+    /**
+     * Bounds the total size of the cache entries. When a download brings it over the bound, the entries validated the
+     * longest ago are evicted. It must be set before the first request.
+     *
+     * @param maxCacheSize the maximum size in bytes, 0 for no bound
+     */
+    public void setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Bounds the age of the cache entries : an entry which was not validated for longer is deleted instead of being
+     * served or revalidated.
+     *
+     * @param maxCacheAge the maximum age, zero for no bound
+     */
+    public void setMaxCacheAge(Duration maxCacheAge) {
+        this.maxCacheAge = maxCacheAge.toMillis();
+    }
+
+    /**
+     * Serves the cached copies without revalidating them until their hard time to live, and revalidates them in the
+     * background once their soft time to live is over. The refreshes run on a bounded pool of daemon threads; when
+     * its queue is full, a refresh is skipped and tried again by a later lookup.
+     *
+     * @param softTtl the age after which a cached copy is revalidated in the background
+     * @param hardTtl the age after which a cached copy is revalidated before being served
+     * @param threads the number of refresh threads
+     * @param queueSize the maximum number of refreshes waiting for a thread
+     */
+    public synchronized void enableRefreshAhead(Duration softTtl, Duration hardTtl, int threads, int queueSize) {
+        this.softTtl = softTtl.toMillis();
+        this.hardTtl = Math.max(hardTtl.toMillis(), this.softTtl);
+        if (refreshExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                    ResourceExecutors.daemonThreadFactory("lutece-resources-refresh"));
+            executor.allowCoreThreadTimeOut(true);
+            refreshExecutor = executor;
+        }
+    }
+
+    /**
+     * Sets whether a cached copy is served when it can't be revalidated because the server can't be reached or
+     * answers with a server error.
+     *
+     * @param serveStaleOnError <code>false</code> to report the errors instead
+     */
+    public void setServeStaleOnError(boolean serveStaleOnError) {
+        this.serveStaleOnError = serveStaleOnError;
+    }
+
+    /**
+     * Limits the number of concurrent requests to each host, so that a slow host can't hold every thread waiting on
+     * it. The requests over the limit are rejected at once with a {@link HostBusyException}. It must be set before the
+     * first request.
+     *
+     * @param maxConcurrentRequestsPerHost the maximum number of concurrent requests to a host, 0 for no limit
+     */
+    public void setMaxConcurrentRequestsPerHost(int maxConcurrentRequestsPerHost) {
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+    }
+
+    /**
+     * Serves the cached copy of a resource without any request, when the stale copies are served on errors. It is
+     * used when the server is known to be failing.
+     *
+     * @param uri the URI of the resource
+     * @return the cached copy, or an empty optional if there is none or if the stale copies are not served
+     */
+    public Optional<Entry> serveCached(URI uri) {
+        Entry cached = serveStaleOnError ? read(uri, toEntryFile(uri)) : null;
+        if (cached == null) {
+            return Optional.empty();
+        }
+        staleServed.increment();
+        return Optional.of(cached);
+    }
+
+    /**
+     * Stops the background refreshes.
+     */
+    public synchronized void close() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+            refreshExecutor = null;
+        }
+    }
+
+    /**
+     * Gets a resource : in the refresh-ahead mode, the cached copy is served as long as it is younger than the hard
+     * time to live, otherwise the resource is {@linkplain #fetch(URI) fetched}.
+     *
+     * @param uri the URI of the resource
+     * @return the cache entry holding the body, or an empty optional if the server does not have the resource
+     * @throws IOException if the resource can't be fetched, and there is no cached copy to serve instead
+     */
+    public Optional<Entry> get(URI uri) throws IOException {
+        Entry cached = read(uri, toEntryFile(uri));
+        if (isServedAhead(uri, cached)) {
+            return Optional.of(cached);
+        }
+        try {
+            return fetch(uri);
+        } catch (IOException e) {
+            return serveStale(uri, cached, e);
+        }
+    }
+
+    /**
+     * Fetches a resource, revalidating the cached copy when there is one.
+     *
+     * @param uri the URI of the resource
+     * @return the cache entry holding the current body, or an empty optional if the server does not have the resource
+     * @throws IOException if the server can't be reached or answers with a server error
+     */
+    public Optional<Entry> fetch(URI uri) throws IOException {
+        Path entryFile = toEntryFile(uri);
+        Entry cached = read(uri, entryFile);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(requestTimeout).GET();
+        if (cached != null) {
+            if (!cached.etag.isEmpty()) {
+                request.header("If-None-Match", cached.etag);
+            }
+            if (!cached.lastModified.isEmpty()) {
+                request.header("If-Modified-Since", cached.lastModified);
+            }
+        }
+        Path download = Files.createTempFile(cacheDirectory, "download", ".tmp");
+        boolean kept = false;
+        try {
+            HttpResponse<Path> response = send(request.build(), info -> {
+                if (info.statusCode() != 200) {
+                    return HttpResponse.BodySubscribers.replacing(null);
+                }
+                try {
+                    writeHeader(download, uri, info.headers());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return HttpResponse.BodySubscribers.ofFile(download, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            });
+            int status = response.statusCode();
+            if (status == 304 && cached != null) {
+                revalidations.increment();
+                LOGGER.debug("HttpResourceFetcher : '{}' was not modified", uri);
+                // the modification time of the entry records when it was last validated
+                Files.setLastModifiedTime(entryFile, FileTime.fromMillis(System.currentTimeMillis()));
+                Entry validated = Entry.read(uri, entryFile);
+                return Optional.of(validated != null ? validated : cached);
+            }
+            if (status == 200) {
+                downloads.increment();
+                long replaced = sizeOf(entryFile);
+                long written = sizeOf(download);
+                move(download, entryFile);
+                kept = true;
+                LOGGER.debug("HttpResourceFetcher : '{}' was downloaded", uri);
+                long max = maxCacheSize;
+                if (max > 0 && cacheSize.addAndGet(written - replaced) > max) {
+                    trim(max, entryFile);
+                }
+                return Optional.ofNullable(Entry.read(uri, entryFile));
+            }
+            if (status >= 500) {
+                throw new IOException("HTTP " + status + " when fetching " + uri);
+            }
+            LOGGER.debug("HttpResourceFetcher : '{}' was not found, HTTP {}", uri, status);
+            if (status == 404 || status == 410) {
+                delete(entryFile);
+            }
+            return Optional.empty();
+        } finally {
+            if (!kept) {
+                Files.deleteIfExists(download);
+            }
+        }
+    }
+
+    /**
+     * Checks that a resource exists with a <code>HEAD</code> request, without downloading its body. When the
+     * validators of the response match the cached copy, the probe hands it out so that it can be read without another
+     * request. Servers refusing <code>HEAD</code> requests are answered with {@link #fetch(URI)}. In the
+     * refresh-ahead mode, a cached copy younger than the hard time to live is handed out without any request.
+     *
+     * @param uri the URI of the resource
+     * @return the probe, or an empty optional if the server does not have the resource
+     * @throws IOException if the server can't be reached or answers with a server error, and there is no cached copy
+     *         to serve instead
+     */
+    public Optional<Probe> probe(URI uri) throws IOException {
+        Path entryFile = toEntryFile(uri);
+        Entry cached = read(uri, entryFile);
+        if (isServedAhead(uri, cached)) {
+            return Optional.of(new Probe(cached));
+        }
+        try {
+            return probeRemote(uri, entryFile, cached);
+        } catch (IOException e) {
+            return serveStale(uri, cached, e).map(entry -> new Probe(entry, e));
+        }
+    }
+
+    private Optional<Probe> probeRemote(URI uri, Path entryFile, Entry cached) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(requestTimeout)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody()).build();
+        HttpResponse<Void> response = send(request, HttpResponse.BodyHandlers.discarding());
+        probes.increment();
+        int status = response.statusCode();
+        if (status == 405 || status == 501) {
+            return fetch(uri).map(Probe::new);
+        }
+        if (status >= 500) {
+            throw new IOException("HTTP " + status + " when probing " + uri);
+        }
+        if (status >= 300) {
+            LOGGER.debug("HttpResourceFetcher : '{}' was not found, HTTP {}", uri, status);
+            if (status == 404 || status == 410) {
+                delete(entryFile);
+            }
+            return Optional.empty();
+        }
+        if (cached != null && cached.isValidatedBy(response.headers())) {
+            Files.setLastModifiedTime(entryFile, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(new Probe(cached));
+        }
+        return Optional.of(new Probe(null));
+    }
+
+    /**
+     * Whether a cached copy is served without a request, scheduling its refresh once its soft time to live is over.
+     */
+    private boolean isServedAhead(URI uri, Entry cached) {
+        ThreadPoolExecutor executor = refreshExecutor;
+        if (cached == null || executor == null) {
+            return false;
+        }
+        long age = System.currentTimeMillis() - cached.validated;
+        if (age >= hardTtl) {
+            return false;
+        }
+        if (age >= softTtl && refreshing.add(uri)) {
+            try {
+                executor.execute(() -> refresh(uri));
+            } catch (RejectedExecutionException e) {
+                refreshing.remove(uri);
+                rejectedRefreshes.increment();
+                LOGGER.debug("HttpResourceFetcher : the refresh of '{}' was rejected, the refresh queue is full", uri);
+            }
+        }
+        return true;
+    }
+
+    private void refresh(URI uri) {
+        try {
+            fetch(uri);
+            refreshes.increment();
+        } catch (IOException e) {
+            LOGGER.debug("HttpResourceFetcher : the background refresh of '{}' failed", uri, e);
+        } finally {
+            refreshing.remove(uri);
+        }
+    }
+
+    private Optional<Entry> serveStale(URI uri, Entry cached, IOException e) throws IOException {
+        if (cached == null || !serveStaleOnError) {
+            throw e;
+        }
+        staleServed.increment();
+        LOGGER.warn("HttpResourceFetcher : serving the cached copy of '{}' which can't be revalidated : {}", uri,
+                e.getMessage());
+        return Optional.of(cached);
+    }
+
+    /**
+     * @return the number of responses whose body was downloaded
+     */
+    public long getDownloadCount() {
+        return downloads.sum();
+    }
+
+    /**
+     * @return the number of cached bodies confirmed by a <code>304 Not Modified</code> response
+     */
+    public long getRevalidationCount() {
+        return revalidations.sum();
+    }
+
+    /**
+     * @return the number of <code>HEAD</code> requests sent by {@link #probe(URI)}
+     */
+    public long getProbeCount() {
+        return probes.sum();
+    }
+
+    /**
+     * @return the number of background refreshes completed
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * @return the number of background refreshes skipped because the refresh queue was full
+     */
+    public long getRejectedRefreshCount() {
+        return rejectedRefreshes.sum();
+    }
+
+    /**
+     * @return the number of requests rejected because their host had too many requests in progress
+     */
+    public long getBulkheadRejectionCount() {
+        return bulkheadRejections.sum();
+    }
+
+    /**
+     * @return the number of cached copies served because they could not be revalidated
+     */
+    public long getStaleServedCount() {
+        return staleServed.sum();
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        int limit = maxConcurrentRequestsPerHost;
+        String host = request.uri().getAuthority();
+        Semaphore permits = limit > 0 && host != null
+                ? hostPermits.computeIfAbsent(host, key -> new Semaphore(limit))
+                : null;
+        if (permits != null && !permits.tryAcquire()) {
+            bulkheadRejections.increment();
+            throw new HostBusyException(host);
+        }
+        try {
+            return client.send(request, handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + request.uri());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+
+    private static void writeHeader(Path file, URI uri, HttpHeaders headers) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.TRUNCATE_EXISTING)))) {
+            out.writeInt(ENTRY_MAGIC);
+            out.writeUTF(uri.toString());
+            out.writeUTF(headers.firstValue("ETag").orElse(""));
+            out.writeUTF(headers.firstValue("Last-Modified").orElse(""));
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return the number of cache entries evicted to keep the cache within its size bound, or because they were too old
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the directory of the disk cache
+     */
+    public Path getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    /**
+     * @return the total size of the cache entries, in bytes
+     */
+    public long getCacheSize() {
+        return cacheSize.get();
+    }
+
+    /**
+     * Reads a cache entry, deleting it if it is older than the maximum age.
+     */
+    private Entry read(URI uri, Path file) {
+        Entry entry = Entry.read(uri, file);
+        long maxAge = maxCacheAge;
+        if (entry != null && maxAge > 0 && System.currentTimeMillis() - entry.validated > maxAge) {
+            LOGGER.debug("HttpResourceFetcher : evicting the cache entry of '{}' which is too old", uri);
+            if (delete(file)) {
+                evictions.increment();
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Evicts the entries validated the longest ago, until the cache is back to 90% of its bound.
+     *
+     * @param kept the entry just written, which is not evicted
+     */
+    private synchronized void trim(long max, Path kept) throws IOException {
+        // the times are read once : they change meanwhile, which a comparator must not see
+        List<Map.Entry<Path, Long>> entries;
+        try (Stream<Path> listed = listEntries()) {
+            entries = listed.filter(entry -> !entry.equals(kept))
+                    .map(entry -> Map.entry(entry, lastModified(entry))).collect(Collectors.toList());
+        }
+        entries.sort(Map.Entry.comparingByValue());
+        long target = max - max / 10;
+        for (Map.Entry<Path, Long> entry : entries) {
+            if (cacheSize.get() <= target) {
+                break;
+            }
+            if (delete(entry.getKey())) {
+                evictions.increment();
+            }
+        }
+        LOGGER.debug("HttpResourceFetcher : the cache holds {} bytes after eviction", cacheSize.get());
+    }
+
+    private boolean delete(Path entry) {
+        long size = sizeOf(entry);
+        boolean deleted;
+        try {
+            deleted = Files.deleteIfExists(entry);
+        } catch (IOException e) {
+            LOGGER.debug("HttpResourceFetcher : could not delete the cache entry '{}'", entry, e);
+            return false;
+        }
+        if (deleted) {
+            cacheSize.addAndGet(-size);
+        }
+        return deleted;
+    }
+
+    private Stream<Path> listEntries() throws IOException {
+        return Files.list(cacheDirectory).filter(file -> file.getFileName().toString().endsWith(ENTRY_SUFFIX));
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path toEntryFile(URI uri) {
+        return cacheDirectory.resolve(toKey(uri) + ENTRY_SUFFIX);
+    }
+
+    private static String toKey(URI uri) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(uri.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * The outcome of a successful {@link HttpResourceFetcher#probe(URI)}.
+     */
+    public static final class Probe {
+        private final Entry entry;
+        private final IOException failure;
+
+        private Probe(Entry entry) {
+            this(entry, null);
+        }
+
+        private Probe(Entry entry, IOException failure) {
+            this.entry = entry;
+            this.failure = failure;
+        }
+
+        /**
+         * @return the cached copy to read, if the probe confirmed it, or served it because the resource could not be
+         *         revalidated
+         */
+        public Optional<Entry> getEntry() {
+            return Optional.ofNullable(entry);
+        }
+
+        /**
+         * @return the error which prevented the revalidation, when a stale copy was served instead
+         */
+        public Optional<IOException> getFailure() {
+            return Optional.ofNullable(failure);
+        }
+    }
+
+    /**
+     * Signals a request rejected because its host has too many requests in progress.
+     */
+    public static final class HostBusyException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private HostBusyException(String host) {
+            super("Too many concurrent requests to " + host);
+        }
+    }
+
+    /**
+     * A cached response : its validators, and the file holding its body.
+     */
+    public static final class Entry {
+        private final Path file;
+        private final String etag;
+        private final String lastModified;
+        private final long validated;
+
+        private Entry(Path file, String etag, String lastModified, long validated) {
+            this.file = file;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validated = validated;
+        }
+
+        /**
+         * Reads the header of a cache entry.
+         *
+         * @return the entry, or null if the file is missing, corrupted, or caches another URI
+         */
+        private static Entry read(URI uri, Path file) {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != ENTRY_MAGIC || !uri.toString().equals(in.readUTF())) {
+                    return null;
+                }
+                return new Entry(file, in.readUTF(), in.readUTF(), Files.getLastModifiedTime(file).toMillis());
+            } catch (IOException e) {
+                LOGGER.debug("HttpResourceFetcher : ignoring the unreadable cache entry '{}'", file, e);
+                return null;
+            }
+        }
+
+        /**
+         * Whether the validators of a response designate this entry.
+         */
+        private boolean isValidatedBy(HttpHeaders headers) {
+            String responseEtag = headers.firstValue("ETag").orElse("");
+            if (!etag.isEmpty() || !responseEtag.isEmpty()) {
+                return etag.equals(responseEtag);
+            }
+            return !lastModified.isEmpty() && lastModified.equals(headers.firstValue("Last-Modified").orElse(""));
+        }
+
+        /**
+         * Opens the body. The stream keeps reading the same body even if the entry is replaced meanwhile.
+         *
+         * @return the body
+         * @throws IOException if the entry can't be read
+         */
+        public InputStream openStream() throws IOException {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+            try {
+                in.readInt();
+                in.readUTF();
+                in.readUTF();
+                in.readUTF();
+                return in;
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return the entity tag of the response, empty if it had none
+         */
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * @return the last modification date of the response, empty if it had none
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A binary snapshot of the resource indexes, saved in the output directory so that the next start does not have to
+ * open and enumerate the unchanged sources again.
+ * <p>
+ * Each source is a local JAR, identified by its loader and its location, and recorded with its size, its last
+ * modification time, and the CRC-32 of its central directory. A source is restored only if these three still match :
+ * checking them costs a stat and a single read of the central directory bytes, instead of opening the archive and
+ * indexing its entries. The names are stored in their {@link JarEntryIndex} front coded form, so restoring them does
+ * not decode nor sort anything.
+ * </p>
+ * <p>
+ * {@link #write(Path)} only keeps the sources restored or recorded since the snapshot was read, so that the sources
+ * no longer in use are dropped.
+ * </p>
+ */
+public final class IndexSnapshot {
+    private static final Logger LOGGER = LogManager.getLogger(IndexSnapshot.class);
+
+    /**
+     * "LRIX"
+     */
+    private static final int MAGIC = 0x4c524958;
+
+    private static final int VERSION = 1;
+
+    private static final int END_SEARCH_SIZE = 22 + 0xFFFF;
+
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+
+    /**
+     * The keys of the sources restored or recorded since the snapshot was read.
+     */
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger restoredCount = new AtomicInteger();
+
+    private volatile boolean modified;
+
+    private IndexSnapshot() {
+    }
+
+    /**
+     * @return a snapshot without any source
+     */
+    public static IndexSnapshot empty() {
+        return new IndexSnapshot();
+    }
+
+    /**
+     * Reads a snapshot. A missing, outdated or corrupted file gives an empty snapshot, as the sources can always be
+     * indexed again.
+     *
+     * @param file the snapshot file
+     * @return the snapshot
+     */
+    public static IndexSnapshot read(Path file) {
+        IndexSnapshot snapshot = new IndexSnapshot();
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            if (bytes.length < 8) {
+                throw new IOException("Truncated file");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 8);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unknown format");
+            }
+            if (ByteBuffer.wrap(bytes, bytes.length - 8, 8).getLong() != crc.getValue()) {
+                throw new IOException("Checksum mismatch");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String loaderId = in.readUTF();
+                Source source = Source.read(in);
+                snapshot.sources.put(key(loaderId, source.location), source);
+            }
+            LOGGER.debug("Read the resource index snapshot {} : {} sources", file, count);
+        } catch (NoSuchFileException e) {
+            LOGGER.debug("No resource index snapshot at {}", file);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Ignoring the resource index snapshot {} : {}", file, e.getMessage());
+            snapshot.sources.clear();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes the sources restored or recorded since the snapshot was read. The file is replaced atomically when the
+     * file system allows it.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the snapshot can't be written
+     */
+    public synchronized void write(Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        List<Map.Entry<String, Source>> kept = new ArrayList<>();
+        for (String key : used) {
+            Source source = sources.get(key);
+            if (source != null) {
+                kept.add(Map.entry(key, source));
+            }
+        }
+        out.writeInt(kept.size());
+        for (Map.Entry<String, Source> entry : kept) {
+            out.writeUTF(entry.getKey().substring(0, entry.getKey().indexOf(' ')));
+            entry.getValue().write(out);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeLong(crc.getValue());
+        out.flush();
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        modified = false;
+        LOGGER.debug("Wrote the resource index snapshot {}", file);
+    }
+
+    private static String key(String loaderId, String location) {
+        return loaderId + ' ' + location;
+    }
+
+    /**
+     * Restores the names of a source, if it did not change since it was recorded.
+     *
+     * @param loaderId the ID of the loader
+     * @param location the location of the source
+     * @param jarId the JAR ID given to the restored entries
+     * @return the names, or null if the source is unknown or changed
+     */
+    public JarEntryIndex restore(String loaderId, String location, int jarId) {
+        String key = key(loaderId, location);
+        Source source = sources.get(key);
+        if (source == null) {
+            return null;
+        }
+        Path file = localJarPath(location);
+        if (file == null || !source.isUnchanged(file)) {
+            LOGGER.debug("The source {} changed since the resource index snapshot", location);
+            sources.remove(key);
+            modified = true;
+            return null;
+        }
+        used.add(key);
+        restoredCount.incrementAndGet();
+        return source.names.withJarId(jarId);
+    }
+
+    /**
+     * Takes the fingerprint of a source, before it is indexed.
+     *
+     * @param location the location of the source
+     * @return the fingerprint, or null if the source can't be recorded in a snapshot
+     */
+    public static Fingerprint fingerprint(String location) {
+        Path file = localJarPath(location);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return Fingerprint.of(file);
+        } catch (IOException e) {
+            LOGGER.debug("The source {} can't be recorded in the resource index snapshot : {}", location,
+                    e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records the names of a source.
+     *
+     * @param loaderId the ID of the loader
+     * @param location the location of the source
+     * @param fingerprint the fingerprint taken before the source was indexed, ignored if null
+     * @param names the names of the source
+     */
+    public void record(String loaderId, String location, Fingerprint fingerprint, JarEntryIndex names) {
+        if (fingerprint == null) {
+            return;
+        }
+        String key = key(loaderId, location);
+        sources.put(key, new Source(location, fingerprint, names));
+        used.add(key);
+        modified = true;
+    }
+
+    /**
+     * @return true if sources were recorded or dropped since the snapshot was read or written
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * @return the number of sources restored from this snapshot
+     */
+    public int getRestoredCount() {
+        return restoredCount.get();
+    }
+
+    /**
+     * @return the number of sources held by this snapshot
+     */
+    public int size() {
+        return sources.size();
+    }
+
+    private static Path localJarPath(String location) {
+        if (!MappedJarHolder.isMappable(location)) {
+            return null;
+        }
+        try {
+            return MappedJarHolder.toPath(location);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The size, last modification time and central directory checksum of a local JAR.
+     */
+    public static final class Fingerprint {
+        private final long size;
+        private final long lastModified;
+        private final long directoryOffset;
+        private final int directoryLength;
+        private final long directoryHash;
+
+        private Fingerprint(long size, long lastModified, long directoryOffset, int directoryLength,
+                long directoryHash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.directoryOffset = directoryOffset;
+            this.directoryLength = directoryLength;
+            this.directoryHash = directoryHash;
+        }
+
+        private static Fingerprint of(Path file) throws IOException {
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                int tailLength = (int) Math.min(size, END_SEARCH_SIZE);
+                ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, tail, size - tailLength);
+                int end = MappedJarHolder.findEnd(tail, file);
+                long directoryLength = tail.getInt(end + 12) & 0xFFFFFFFFL;
+                long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+                if (directoryLength == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL
+                        || directoryOffset + directoryLength > size || directoryLength > Integer.MAX_VALUE) {
+                    throw new ZipException("Unsupported central directory : " + file);
+                }
+                long hash = hashDirectory(channel, directoryOffset, (int) directoryLength);
+                return new Fingerprint(size, lastModified, directoryOffset, (int) directoryLength, hash);
+            }
+        }
+
+        private boolean isUnchanged(Path file) {
+            try {
+                if (Files.size(file) != size || Files.getLastModifiedTime(file).toMillis() != lastModified) {
+                    return false;
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    return hashDirectory(channel, directoryOffset, directoryLength) == directoryHash;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private static long hashDirectory(FileChannel channel, long offset, int length) throws IOException {
+            ByteBuffer directory = ByteBuffer.allocate(length);
+            readFully(channel, directory, offset);
+            CRC32 crc = new CRC32();
+            crc.update(directory);
+            return crc.getValue();
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            long pos = position;
+            while (buffer.hasRemaining()) {
+                int count = channel.read(buffer, pos);
+                if (count < 0) {
+                    throw new ZipException("Unexpected end of file");
+                }
+                pos += count;
+            }
+            buffer.flip();
+        }
+    }
+
+    /**
+     * A recorded source.
+     */
+    private static final class Source {
+        private final String location;
+        private final Fingerprint fingerprint;
+        private final JarEntryIndex names;
+
+        private Source(String location, Fingerprint fingerprint, JarEntryIndex names) {
+            this.location = location;
+            this.fingerprint = fingerprint;
+            this.names = names;
+        }
+
+        private boolean isUnchanged(Path file) {
+            return fingerprint.isUnchanged(file);
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(location);
+            out.writeLong(fingerprint.size);
+            out.writeLong(fingerprint.lastModified);
+            out.writeLong(fingerprint.directoryOffset);
+            out.writeInt(fingerprint.directoryLength);
+            out.writeLong(fingerprint.directoryHash);
+            names.writeNames(out);
+        }
+
+        private static Source read(DataInputStream in) throws IOException {
+            String location = in.readUTF();
+            Fingerprint fingerprint = new Fingerprint(in.readLong(), in.readLong(), in.readLong(), in.readInt(),
+                    in.readLong());
+            if (fingerprint.directoryLength < 0) {
+                throw new IOException("Corrupted source " + location);
+            }
+            return new Source(location, fingerprint, JarEntryIndex.readNames(in, 0));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import fr.paris.lutece.plugins.resource.cache.TimedLruCache;
+
+/**
+ * Lists the files of a directory inside a local jar, from a listing of the jar's central directory that is read once
+ * and cached per jar.
+ * <p>
+ * A cached listing is checked against the size and the modification time of the jar on each call, and read again
+ * when the jar has changed.
+ */
+public final class JarDirectoryListings {
+    private static final String PROTOCOL_FILE = "file";
+
+    private final TimedLruCache<Path, Listing> listings;
+
+    /**
+     * @param maxJars the maximum number of jar listings kept in memory
+     */
+    public JarDirectoryListings(int maxJars) {
+        listings = new TimedLruCache<>(maxJars, 0);
+    }
+
+    /**
+     * Lists the files found directly in a directory of a jar.
+     *
+     * @param directory the <code>jar:</code> URL of the directory
+     * @return the <code>jar:</code> URLs of the files, in the order of the central directory; empty when the
+     *         directory holds no file
+     * @throws IOException if the URL does not designate a local jar, or if the jar cannot be read
+     */
+    public Set<URL> list(URL directory) throws IOException {
+        JarURLConnection connection = open(directory);
+        URL jarUrl = connection.getJarFileURL();
+        List<String> files = getListing(toPath(jarUrl)).files.get(toPrefix(connection.getEntryName()));
+        if (files == null) {
+            return Collections.emptySet();
+        }
+        String root = "jar:" + jarUrl.toExternalForm() + "!/";
+        Set<URL> urls = new LinkedHashSet<>();
+        for (String file : files) {
+            URL url = ClasspathIndex.resolve(root, file);
+            if (url != null) {
+                urls.add(url);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Lists the names of the files found in a directory of a jar and in its sub-directories.
+     *
+     * @param directory the <code>jar:</code> URL of the directory
+     * @return the entry names of the files
+     * @throws IOException if the URL does not designate a local jar, or if the jar cannot be read
+     */
+    public Stream<String> names(URL directory) throws IOException {
+        JarURLConnection connection = open(directory);
+        String prefix = toPrefix(connection.getEntryName());
+        Listing listing = getListing(toPath(connection.getJarFileURL()));
+        return listing.files.entrySet().stream().filter(entry -> entry.getKey().startsWith(prefix))
+                .flatMap(entry -> entry.getValue().stream());
+    }
+
+    private static JarURLConnection open(URL directory) throws IOException {
+        URLConnection connection = directory.openConnection();
+        if (!(connection instanceof JarURLConnection)) {
+            throw new IOException("Not a jar URL : " + directory);
+        }
+        return (JarURLConnection) connection;
+    }
+
+    private static String toPrefix(String entryName) {
+        if (entryName == null || entryName.isEmpty()) {
+            return "";
+        }
+        return entryName.endsWith("/") ? entryName : entryName + "/";
+    }
+
+    private static Path toPath(URL jarUrl) throws IOException {
+        if (!PROTOCOL_FILE.equals(jarUrl.getProtocol())) {
+            throw new IOException("Not a local jar : " + jarUrl);
+        }
+        try {
+            return Paths.get(jarUrl.toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Invalid jar URL : " + jarUrl, e);
+        }
+    }
+
+    /**
+     * Drops the cached listing of a jar.
+     *
+     * @param jar the path of the jar
+     */
+    public void invalidate(Path jar) {
+        listings.remove(jar);
+    }
+
+    private Listing getListing(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Listing listing = listings.get(path);
+        if (listing != null && listing.size == attributes.size() && listing.lastModified == lastModified) {
+            return listing;
+        }
+        Map<String, List<String>> files = new HashMap<>();
+        try (JarFile jar = new JarFile(path.toFile(), false)) {
+            jar.stream().filter(entry -> !entry.isDirectory()).forEach(entry -> {
+                String name = entry.getName();
+                String parent = name.substring(0, name.lastIndexOf('/') + 1);
+                files.computeIfAbsent(parent, key -> new ArrayList<>()).add(name);
+            });
+        }
+        listing = new Listing(attributes.size(), lastModified, files);
+        listings.put(path, listing);
+        return listing;
+    }
+
+    private static final class Listing {
+        private final long size;
+        private final long lastModified;
+        private final Map<String, List<String>> files;
+
+        private Listing(long size, long lastModified, Map<String, List<String>> files) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.files = files;
+        }
+    }
+}
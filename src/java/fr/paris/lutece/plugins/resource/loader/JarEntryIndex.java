@@ -0,0 +1,560 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A compact, immutable index of JAR entry names, mapping each name to the integer ID of the JAR holding it.
+ * <p>
+ * Names are sorted by their UTF-8 bytes and front coded : each name only stores the length of the prefix it shares
+ * with the previous name, followed by the remaining bytes. Every {@value #BLOCK_SIZE} entries, a name is stored in
+ * full, so that a lookup is a binary search over these block heads followed by a short sequential scan.
+ * </p>
+ * <p>
+ * Compared with a <code>Map&lt;String, String&gt;</code> from entry names to JAR URLs, the index holds no object per
+ * entry : an entry costs a few bytes of suffix plus four bytes of JAR ID, instead of a map entry, a String and its
+ * backing array; {@link #getFootprint()} estimates the heap it retains. Building it no longer copies the entries of
+ * each JAR in an intermediate <code>Hashtable</code> either.
+ * </p>
+ */
+public final class JarEntryIndex {
+    /**
+     * Number of entries between two names stored in full.
+     */
+    static final int BLOCK_SIZE = 16;
+
+    /**
+     * The index holding no entry.
+     */
+    public static final JarEntryIndex EMPTY = new JarEntryIndex(new byte[0], new int[0], new int[0], 0, 0);
+
+    /**
+     * The front coded names : for each entry, the shared prefix length and the suffix length as variable length
+     * integers, followed by the suffix bytes.
+     */
+    private final byte[] data;
+
+    /**
+     * The offset in {@link #data} of the first entry of each block.
+     */
+    private final int[] blockOffsets;
+
+    /**
+     * The JAR ID of each entry, in name order.
+     */
+    private final int[] jarIds;
+
+    private final int size;
+
+    private final int maxNameLength;
+
+    private JarEntryIndex(byte[] data, int[] blockOffsets, int[] jarIds, int size, int maxNameLength) {
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.jarIds = jarIds;
+        this.size = size;
+        this.maxNameLength = maxNameLength;
+    }
+
+    /**
+     * Receives the entries of an index.
+     */
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void visit(String name, int jarId);
+    }
+
+    /**
+     * @return a builder of index
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ID of the JAR holding an entry.
+     *
+     * @param name the name of the entry
+     * @return the JAR ID, or -1 if the entry is not indexed
+     */
+    public int getJarId(String name) {
+        if (size == 0 || name == null) {
+            return -1;
+        }
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int block = findBlock(key);
+        if (block < 0) {
+            return -1;
+        }
+        Cursor cursor = new Cursor(block);
+        int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+        while (cursor.index < end && cursor.next()) {
+            int cmp = cursor.compareTo(key);
+            if (cmp == 0) {
+                return cursor.jarId();
+            }
+            if (cmp > 0) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Tells whether an entry is indexed.
+     *
+     * @param name the name of the entry
+     * @return true if the entry is indexed
+     */
+    public boolean contains(String name) {
+        return getJarId(name) >= 0;
+    }
+
+    /**
+     * Visits every entry, in name order.
+     *
+     * @param visitor the visitor
+     */
+    public void forEach(EntryVisitor visitor) {
+        Cursor cursor = new Cursor(0);
+        while (cursor.next()) {
+            visitor.visit(cursor.name(), cursor.jarId());
+        }
+    }
+
+    /**
+     * Lists the names starting with a prefix, in the order of their UTF-8 bytes. The names are decoded lazily, as the stream is consumed.
+     *
+     * @param prefix the prefix, empty for every name
+     * @return the names
+     */
+    public Stream<String> names(String prefix) {
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int block = size == 0 ? 0 : Math.max(0, findBlock(key));
+        Cursor cursor = new Cursor(block);
+        Spliterator<String> spliterator = new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super String> action) {
+                while (cursor.next()) {
+                    if (cursor.startsWith(key)) {
+                        action.accept(cursor.name());
+                        return true;
+                    }
+                    if (cursor.compareTo(key) > 0) {
+                        break;
+                    }
+                }
+                cursor.index = size;
+                return false;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Returns a new index holding the entries of this index and of the given one. For the names held by both, the
+     * entry of the given index wins.
+     *
+     * @param overrides the entries to add
+     * @return the merged index
+     */
+    public JarEntryIndex merge(JarEntryIndex overrides) {
+        if (overrides.size == 0) {
+            return this;
+        }
+        if (size == 0) {
+            return overrides;
+        }
+        Encoder encoder = new Encoder(data.length + overrides.data.length, size + overrides.size);
+        Cursor left = new Cursor(0);
+        Cursor right = overrides.new Cursor(0);
+        boolean hasLeft = left.next();
+        boolean hasRight = right.next();
+        while (hasLeft || hasRight) {
+            int cmp = !hasLeft ? 1 : (!hasRight ? -1 : left.compareTo(right));
+            if (cmp < 0) {
+                encoder.append(left.buffer, left.length, left.jarId());
+                hasLeft = left.next();
+            } else {
+                encoder.append(right.buffer, right.length, right.jarId());
+                if (cmp == 0) {
+                    hasLeft = left.next();
+                }
+                hasRight = right.next();
+            }
+        }
+        return encoder.build();
+    }
+
+    /**
+     * Returns a copy of this index where every entry belongs to the given JAR. The names are shared, not copied.
+     *
+     * @param jarId the JAR ID
+     * @return the index
+     */
+    public JarEntryIndex withJarId(int jarId) {
+        if (size == 0) {
+            return this;
+        }
+        int[] ids = new int[size];
+        Arrays.fill(ids, jarId);
+        return new JarEntryIndex(data, blockOffsets, ids, size, maxNameLength);
+    }
+
+    /**
+     * Writes the names of this index, without their JAR IDs, in their front coded form.
+     *
+     * @param out the output
+     * @throws IOException if the index can't be written
+     */
+    public void writeNames(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeInt(maxNameLength);
+        out.writeInt(data.length);
+        out.write(data);
+        out.writeInt(blockOffsets.length);
+        for (int offset : blockOffsets) {
+            out.writeInt(offset);
+        }
+    }
+
+    /**
+     * Reads names written by {@link #writeNames(DataOutput)}.
+     *
+     * @param in the input
+     * @param jarId the ID of the JAR holding the names
+     * @return the index
+     * @throws IOException if the index can't be read, or is corrupted
+     */
+    public static JarEntryIndex readNames(DataInput in, int jarId) throws IOException {
+        int size = in.readInt();
+        int maxNameLength = in.readInt();
+        int dataLength = in.readInt();
+        if (size < 0 || maxNameLength < 0 || maxNameLength > 0xFFFF || dataLength < 0
+                || dataLength > (long) size * (maxNameLength + 10)) {
+            throw new IOException("Corrupted JAR entry index");
+        }
+        byte[] data = new byte[dataLength];
+        in.readFully(data);
+        int blocks = in.readInt();
+        if (blocks != (size + BLOCK_SIZE - 1) / BLOCK_SIZE) {
+            throw new IOException("Corrupted JAR entry index");
+        }
+        int[] blockOffsets = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockOffsets[i] = in.readInt();
+            if (blockOffsets[i] < 0 || blockOffsets[i] >= dataLength) {
+                throw new IOException("Corrupted JAR entry index");
+            }
+        }
+        if (size == 0) {
+            return EMPTY;
+        }
+        int[] ids = new int[size];
+        Arrays.fill(ids, jarId);
+        return new JarEntryIndex(data, blockOffsets, ids, size, maxNameLength);
+    }
+
+    /**
+     * Returns an estimate of the heap retained by this index, in bytes.
+     *
+     * @return the estimated footprint
+     */
+    public long getFootprint() {
+        // object headers and fields, then the three arrays with their headers
+        return 40 + (16 + data.length) + (16 + 4L * blockOffsets.length) + (16 + 4L * jarIds.length);
+    }
+
+    /**
+     * Finds the last block whose first name is lower than or equal to the key.
+     */
+    private int findBlock(byte[] key) {
+        int low = 0;
+        int high = blockOffsets.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int offset = blockOffsets[mid];
+            // the first entry of a block has no shared prefix
+            int pos = offset + 1;
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                length |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            int cmp = Arrays.compareUnsigned(data, pos, pos + length, key, 0, key.length);
+            if (cmp <= 0) {
+                found = mid;
+                if (cmp == 0) {
+                    break;
+                }
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Decodes the entries sequentially, from the start of a block.
+     */
+    private final class Cursor {
+        private final byte[] buffer = new byte[maxNameLength];
+
+        private int length;
+
+        private int pos;
+
+        private int index;
+
+        private Cursor(int block) {
+            this.index = block * BLOCK_SIZE;
+            this.pos = size == 0 ? 0 : blockOffsets[block];
+        }
+
+        /**
+         * Moves to the next entry. The index of the current entry is then <code>index - 1</code>.
+         */
+        private boolean next() {
+            if (index >= size) {
+                return false;
+            }
+            int prefix = readVarInt();
+            int suffix = readVarInt();
+            System.arraycopy(data, pos, buffer, prefix, suffix);
+            pos += suffix;
+            length = prefix + suffix;
+            index++;
+            return true;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        private int jarId() {
+            return jarIds[index - 1];
+        }
+
+        private String name() {
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private int compareTo(byte[] key) {
+            return Arrays.compareUnsigned(buffer, 0, length, key, 0, key.length);
+        }
+
+        private boolean startsWith(byte[] key) {
+            return length >= key.length && Arrays.equals(buffer, 0, key.length, key, 0, key.length);
+        }
+
+        private int compareTo(Cursor other) {
+            return Arrays.compareUnsigned(buffer, 0, length, other.buffer, 0, other.length);
+        }
+    }
+
+    /**
+     * Front codes sorted names.
+     */
+    private static final class Encoder {
+        private byte[] data;
+
+        private int dataLength;
+
+        private int[] blockOffsets;
+
+        private int[] jarIds;
+
+        private int size;
+
+        private byte[] previous = new byte[0];
+
+        private int previousLength;
+
+        private int maxNameLength;
+
+        private Encoder(int dataCapacity, int sizeCapacity) {
+            data = new byte[Math.max(16, dataCapacity)];
+            jarIds = new int[Math.max(1, sizeCapacity)];
+            blockOffsets = new int[Math.max(1, (sizeCapacity + BLOCK_SIZE - 1) / BLOCK_SIZE)];
+        }
+
+        private void append(byte[] name, int length, int jarId) {
+            int prefix = 0;
+            if (size % BLOCK_SIZE == 0) {
+                int block = size / BLOCK_SIZE;
+                if (block == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, block * 2);
+                }
+                blockOffsets[block] = dataLength;
+            } else {
+                int max = Math.min(length, previousLength);
+                while (prefix < max && name[prefix] == previous[prefix]) {
+                    prefix++;
+                }
+            }
+            ensureCapacity(10 + length - prefix);
+            writeVarInt(prefix);
+            writeVarInt(length - prefix);
+            System.arraycopy(name, prefix, data, dataLength, length - prefix);
+            dataLength += length - prefix;
+
+            if (size == jarIds.length) {
+                jarIds = Arrays.copyOf(jarIds, size * 2);
+            }
+            jarIds[size++] = jarId;
+
+            if (previous.length < length) {
+                previous = new byte[Math.max(length, previous.length * 2)];
+            }
+            System.arraycopy(name, 0, previous, 0, length);
+            previousLength = length;
+            maxNameLength = Math.max(maxNameLength, length);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (dataLength + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(dataLength + extra, data.length * 2));
+            }
+        }
+
+        private void writeVarInt(int value) {
+            while ((value & ~0x7f) != 0) {
+                data[dataLength++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[dataLength++] = (byte) value;
+        }
+
+        private JarEntryIndex build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            return new JarEntryIndex(Arrays.copyOf(data, dataLength), Arrays.copyOf(blockOffsets, blocks),
+                    Arrays.copyOf(jarIds, size), size, maxNameLength);
+        }
+    }
+
+    /**
+     * Collects entries in any order, then sorts and front codes them. When a name is added more than once, the last
+     * JAR ID added wins.
+     */
+    public static final class Builder {
+        private byte[][] names = new byte[64][];
+
+        private int[] ids = new int[64];
+
+        private int count;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds an entry.
+         *
+         * @param name the name of the entry
+         * @param jarId the ID of the JAR holding it
+         * @return this builder
+         */
+        public Builder add(String name, int jarId) {
+            if (count == names.length) {
+                names = Arrays.copyOf(names, count * 2);
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            names[count] = name.getBytes(StandardCharsets.UTF_8);
+            ids[count] = jarId;
+            count++;
+            return this;
+        }
+
+        /**
+         * @return the number of entries added so far
+         */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * @return the index of the added entries
+         */
+        public JarEntryIndex build() {
+            if (count == 0) {
+                return EMPTY;
+            }
+            Integer[] order = new Integer[count];
+            long dataCapacity = 0;
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+                dataCapacity += names[i].length + 2;
+            }
+            // stable sort, so that the last of duplicate names comes last
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(names[a], names[b]));
+            Encoder encoder = new Encoder((int) Math.min(Integer.MAX_VALUE - 16, dataCapacity), count);
+            for (int i = 0; i < count; i++) {
+                int current = order[i];
+                if (i + 1 < count && Arrays.equals(names[current], names[order[i + 1]])) {
+                    // a later duplicate wins
+                    continue;
+                }
+                encoder.append(names[current], names[current].length, ids[current]);
+            }
+            return encoder.build();
+        }
+    }
+}
@@ -53,8 +53,21 @@ public class JarHolder {
     private JarURLConnection conn = null;
 
     public JarHolder(String urlpath) {
+        this(urlpath, true);
+    }
+
+    /**
+     * @param urlpath the JAR URL
+     * @param connect false for the subclasses which read the archive by their own means, instead of opening it
+     *        through a {@link JarURLConnection}
+     */
+    protected JarHolder(String urlpath, boolean connect) {
         this.urlpath = urlpath;
 
+        if (!connect) {
+            return;
+        }
+
         try {
             URL url = new URL(urlpath);
 
@@ -66,6 +79,10 @@ public class JarHolder {
 
             conn.setDoOutput(false);
 
+            // each holder owns its JarFile, so that a reloaded JAR is opened again while the previous version is
+            // still being read
+            conn.setUseCaches(false);
+
             conn.connect();
 
             theJar = conn.getJarFile();
@@ -100,6 +117,13 @@ public class JarHolder {
         return data;
     }
 
+    /**
+     * Returns the entries of the JAR, excluding plain directories.
+     *
+     * @return a table whose keys are the entry names, and whose values are the URL of the JAR
+     * @deprecated copies every entry name in a table, use {@link #indexEntries(JarEntryIndex.Builder, int)}
+     */
+    @Deprecated
     public Hashtable<String, String> getEntries() {
         Hashtable<String, String> allEntries = new Hashtable<>(559);
 
@@ -118,6 +142,34 @@ public class JarHolder {
         return allEntries;
     }
 
+    /**
+     * Adds the entries of the JAR, excluding plain directories, to an index, in a single pass over the JAR.
+     *
+     * @param builder the index builder
+     * @param jarId the ID of this JAR in the index
+     */
+    public void indexEntries(JarEntryIndex.Builder builder, int jarId) {
+        if (theJar != null) {
+            Enumeration<JarEntry> all = theJar.entries();
+
+            while (all.hasMoreElements()) {
+                JarEntry je = all.nextElement();
+
+                // We don't map plain directory entries
+                if (!je.isDirectory()) {
+                    builder.add(je.getName(), jarId);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the JAR, or null if it could not be opened or is closed
+     */
+    protected JarFile getJarFile() {
+        return theJar;
+    }
+
     public String getUrlPath() {
         return urlpath;
     }
@@ -25,25 +25,48 @@ package fr.paris.lutece.plugins.resource.loader;
  * 
  * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
  */
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.Dependent;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.ResourceGlob;
+import fr.paris.lutece.plugins.resource.util.ResourceListings;
 
 /**
  * @author Jason van Zyl
  */
 @Named(JarResourceLoader.ID)
 @Dependent
-public class JarResourceLoader extends AbstractResourceLoader {
+public class JarResourceLoader extends AbstractResourceLoader implements IndexSnapshotSupport, ResourceNameFilter {
     private static final Logger LOGGER = LogManager.getLogger(JarResourceLoader.class);
 
     public static final String ID = "jar";
@@ -52,15 +75,53 @@ public class JarResourceLoader extends AbstractResourceLoader {
     private Integer ordinalValue;
 
     /**
-     * Maps entries to the parent JAR File (key = the entry *excluding* plain directories, value = the JAR URL).
+     * Whether the local JARs are memory-mapped and read by a {@link MappedJarHolder}.
      */
-    private final Map<String, String> entryDirectory = new LinkedHashMap<>(559);
+    @Inject
+    @ConfigProperty(name="resourceLoader.jar.memoryMapped", defaultValue="false")
+    private Boolean memoryMapped;
+
+    /**
+     * Number of {@link java.util.jar.JarFile} handles reading each local JAR, see {@link PooledJarHolder}.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.jar.readHandles", defaultValue="1")
+    private Integer readHandles;
+
+    /**
+     * The false positive probability of the Bloom filter of the entries; zero disables the filter.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.bloomFilter.fpp", defaultValue="0.01")
+    private Double bloomFilterFpp;
+
+    /**
+     * The JARs and their entries, replaced as a whole each time a JAR is added, so that lookups read it without any
+     * lock and never see a half-built directory.
+     */
+    private volatile State state = State.EMPTY;
+
+    /**
+     * The snapshot the JAR indexes are restored from and recorded in, if any.
+     */
+    private volatile IndexSnapshot snapshot;
 
     /**
-     * Maps JAR URLs to the actual JAR (key = the JAR URL, value = the JAR).
+     * The JARs replaced or removed, waiting for their last stream to be closed.
      */
-    private final Map<String, JarHolder> jarFiles = new LinkedHashMap<>(89);
+    private final Set<JarSlot> retiring = ConcurrentHashMap.newKeySet();
 
+    /**
+     * Builds the Bloom filter of the initial generation, with the configured probability.
+     */
+    @PostConstruct
+    public synchronized void init() {
+        state = state.withFilter(bloomFilterFpp);
+    }
+
+    /**
+     * Loads or reloads a JAR. Must be called while holding the lock of the loader.
+     */
     private void loadJar(String path) {
         LOGGER.debug("JarResourceLoader : trying to load '{}'", path);
 
@@ -78,35 +139,205 @@ public class JarResourceLoader extends AbstractResourceLoader {
             path += "!/";
         }
 
-        // Close the jar if it's already open this is useful for a reload
-        closeJar(path);
+        // A reloaded JAR keeps its ID
+        State current = state;
+        Integer jarId = current.jarFiles.get(path);
+        if (jarId == null) {
+            jarId = current.jars.size();
+        }
+
+        // Index it's entries, from the snapshot if the JAR did not change
+        JarSlot slot;
+        IndexSnapshot currentSnapshot = snapshot;
+        JarEntryIndex entries = currentSnapshot != null ? currentSnapshot.restore(ID, path, jarId) : null;
+        if (entries != null) {
+            LOGGER.debug("JarResourceLoader : restored {} entries of '{}' from the snapshot", entries.size(), path);
+            slot = new JarSlot(path, null);
+        } else {
+            IndexSnapshot.Fingerprint fingerprint = currentSnapshot != null ? IndexSnapshot.fingerprint(path) : null;
+            JarHolder temp = newHolder(path);
+            slot = new JarSlot(path, temp);
+            JarEntryIndex.Builder builder = JarEntryIndex.builder();
+            temp.indexEntries(builder, jarId);
+            entries = builder.build();
+            if (currentSnapshot != null) {
+                currentSnapshot.record(ID, path, fingerprint, entries);
+            }
+        }
+
+        // Publish the new generation, then retire the replaced JAR : it is closed once its last stream is closed
+        state = current.with(jarId, slot, entries).withFilter(bloomFilterFpp);
+        if (jarId < current.jars.size()) {
+            current.jars.get(jarId).retire();
+        }
+    }
 
-        // Create a new JarHolder
-        JarHolder temp = new JarHolder(path);
+    /**
+     * Creates the holder of a JAR : memory-mapped if enabled and possible, else read through a pool of handles if more
+     * than one is configured and the JAR is local.
+     */
+    private JarHolder newHolder(String path) {
+        if (Boolean.TRUE.equals(memoryMapped) && MappedJarHolder.isMappable(path)) {
+            try {
+                return MappedJarHolder.open(path);
+            } catch (IOException e) {
+                LOGGER.warn("JarResourceLoader : can not map '{}', falling back to a JarURLConnection", path, e);
+            }
+        }
+        if (readHandles != null && readHandles > 1 && MappedJarHolder.isMappable(path)) {
+            try {
+                return new PooledJarHolder(path, readHandles);
+            } catch (IOException e) {
+                LOGGER.warn("JarResourceLoader : can not pool the handles of '{}'", path, e);
+            }
+        }
+        return new JarHolder(path);
+    }
+
+    /**
+     * Looks an entry up.
+     *
+     * @return the entry, or null if no JAR contains it
+     */
+    private LuteceResource lookup(State current, String source) {
+        try {
+            return lookupIn(current, source);
+        } catch (StaleGenerationException e) {
+            // the JAR was replaced meanwhile, look in the new generation
+            State latest = state;
+            return latest != current ? lookup(latest, source) : null;
+        }
+    }
+
+    /**
+     * Looks an entry up in a generation only.
+     *
+     * @return the entry, or null if no JAR contains it
+     * @throws StaleGenerationException if the JAR holding the entry was replaced and closed meanwhile
+     */
+    private LuteceResource lookupIn(State current, String source) throws StaleGenerationException {
+        int jarId = current.entryDirectory.getJarId(source);
+        if (jarId < 0) {
+            return null;
+        }
+        JarSlot slot = current.jars.get(jarId);
+        if (!slot.acquire()) {
+            throw StaleGenerationException.INSTANCE;
+        }
+        try {
+            LuteceResource entry = slot.holder().getLuteceResource(source);
+            if (entry instanceof ByteBufferResource) {
+                return new BufferedJarEntryResource(slot, source, entry);
+            }
+            return entry != null ? new JarEntryResource(slot, source, entry) : null;
+        } finally {
+            slot.release();
+        }
+    }
+
+    /**
+     * Closes the JARs which have no open stream. They are opened again on their next lookup.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        for (JarSlot slot : state.jars) {
+            if (slot != null) {
+                slot.closeIdle();
+            }
+        }
+    }
 
-        // Add it's entries to the entryCollection
-        addEntries(temp.getEntries());
+    /**
+     * Reloads a JAR search path : its new entries are indexed aside, then swapped in at once, so that the entries it
+     * no longer holds disappear. The lookups and streams in progress keep reading the previous version of the JAR,
+     * which is closed with its last stream. The JAR keeps its precedence among the search paths.
+     * <p>
+     * A memory-mapped JAR must be replaced by moving a new file in place, not rewritten in place, as the previous
+     * version is still mapped.
+     * </p>
+     *
+     * @param path the search path
+     */
+    @Override
+    public synchronized void reloadSearchPath(String path) {
+        if (paths.contains(path)) {
+            loadJar(path);
+        } else {
+            addSearchPath(path);
+        }
+    }
 
-        // Add it to the Jar table
-        jarFiles.put(temp.getUrlPath(), temp);
+    /**
+     * Removes a JAR search path, and its entries. The previous version of the JAR is closed with its last stream.
+     *
+     * @param path the search path
+     */
+    @Override
+    public synchronized void removeSearchPath(String path) {
+        if (path == null || !paths.remove(path)) {
+            return;
+        }
+        String url = path.endsWith("!/") ? path : path + "!/";
+        State current = state;
+        Integer jarId = current.jarFiles.get(url);
+        if (jarId != null) {
+            state = current.without(jarId).withFilter(bloomFilterFpp);
+            current.jars.get(jarId).retire();
+        }
     }
 
     /**
-     * Closes a Jar file and set its URLConnection to null.
+     * @return the number of replaced or removed JARs which are still open, because some of their streams are
      */
-    private void closeJar(String path) {
-        if (jarFiles.containsKey(path)) {
-            JarHolder theJar = jarFiles.get(path);
+    public int getRetiringJarCount() {
+        return retiring.size();
+    }
 
-            theJar.close();
+    /**
+     * Answers from the Bloom filter of the current generation, built before each JAR added, reloaded or removed is
+     * published. Until a filter of the current probability is built, every name might be held.
+     */
+    @Override
+    public boolean mightContain(String name) {
+        if (name == null || name.isEmpty()) {
+            return false;
+        }
+        Double fpp = bloomFilterFpp;
+        if (fpp == null || !(fpp > 0 && fpp < 1)) {
+            return true;
+        }
+        BloomFilter filter = state.filter;
+        if (filter == null || filter.getFalsePositiveProbability() != fpp) {
+            return true;
         }
+        String source = name.startsWith("/") ? name.substring(1) : name;
+        return filter.mightContain(source);
     }
 
     /**
-     * Copy all the entries into the entryDirectory. It will overwrite any duplicate keys.
+     * Switches the memory mapping of the local JARs on or off. It applies to the JARs added from now on; their entries
+     * stored uncompressed can then be read as a buffer through {@link ByteBufferResource}.
+     *
+     * @param memoryMapped <code>true</code> to map the local JARs
      */
-    private void addEntries(Map<String, String> entries) {
-        entryDirectory.putAll(entries);
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Sets the false positive probability of the Bloom filter of the entries, and builds the filter of the current
+     * generation again.
+     *
+     * @param falsePositiveProbability the probability, between 0 and 1 exclusive, or zero to disable the filter
+     */
+    public synchronized void setBloomFilterFpp(double falsePositiveProbability) {
+        this.bloomFilterFpp = falsePositiveProbability;
+        state = state.withFilter(falsePositiveProbability);
+    }
+
+    @Override
+    public void setIndexSnapshot(IndexSnapshot snapshot) {
+        this.snapshot = snapshot;
     }
 
     /**
@@ -122,6 +353,18 @@ public class JarResourceLoader extends AbstractResourceLoader {
             throw new ResourceNotFoundException("Need to have a resource!");
         }
 
+        String name = source.startsWith("/") ? source.substring(1) : source;
+
+        return findResource(name)
+                .orElseThrow(() -> new ResourceNotFoundException("JarResourceLoader Error: cannot find resource " + name));
+    }
+
+    @Override
+    public Optional<LuteceResource> findResource(String source) {
+        if (source == null || source.length() == 0) {
+            return Optional.empty();
+        }
+
         /*
          * if a / leads off, then just nip that :)
          */
@@ -129,20 +372,59 @@ public class JarResourceLoader extends AbstractResourceLoader {
             source = source.substring(1);
         }
 
-        if (entryDirectory.containsKey(source)) {
-            String jarurl = entryDirectory.get(source);
+        return Optional.ofNullable(lookup(state, source));
+    }
 
-            final JarHolder holder = jarFiles.get(jarurl);
-            if (holder != null) {
-                return holder.getLuteceResource(source);
+    /**
+     * Answers the whole batch from the entry directory, in one pass.
+     */
+    @Override
+    public Map<String, LuteceResource> findResources(Collection<String> names) {
+        Map<String, LuteceResource> resources = new LinkedHashMap<>();
+        // the whole batch is answered from the same generation, started again if a reload retires it meanwhile
+        while (true) {
+            State current = state;
+            try {
+                for (String name : names) {
+                    if (name == null || name.isEmpty()) {
+                        continue;
+                    }
+                    String source = name.startsWith("/") ? name.substring(1) : name;
+                    LuteceResource resource = lookupIn(current, source);
+                    if (resource != null) {
+                        resources.put(name, resource);
+                    }
+                }
+                return resources;
+            } catch (StaleGenerationException e) {
+                resources.clear();
             }
         }
+    }
 
-        throw new ResourceNotFoundException("JarResourceLoader Error: cannot find resource " + source);
+    /**
+     * Lists the directory from the entry directory, decoding only the names under it.
+     */
+    @Override
+    public Stream<LuteceResource> listResources(String path) {
+        String prefix = ResourceListings.toDirectoryPrefix(path);
+        State current = state;
+        return current.entryDirectory.names(prefix)
+                .filter(name -> name.indexOf('/', prefix.length()) < 0)
+                .map(name -> lookup(current, name))
+                .filter(Objects::nonNull);
     }
 
+    /**
+     * Matches the glob against the entry directory, from the base directory of the glob.
+     */
     @Override
-    public void addSearchPath(String path) {
+    public Stream<String> matchResources(ResourceGlob glob) {
+        return state.entryDirectory.names(glob.getBase()).filter(glob::matches);
+    }
+
+    @Override
+    public synchronized void addSearchPath(String path) {
         if (!paths.contains(path)) {
             loadJar(path);
             paths.add(path);
@@ -156,4 +438,330 @@ public class JarResourceLoader extends AbstractResourceLoader {
     public int getOrdinal() {
         return ordinalValue;
     }
+
+    /**
+     * A version of a JAR, opened on demand, and closed once retired and no longer read.
+     */
+    private final class JarSlot {
+        private final String url;
+
+        private volatile JarHolder holder;
+
+        /**
+         * The lookups and streams in progress, or -1 while the JAR is being closed, and once a retired JAR is closed.
+         */
+        private final AtomicInteger references = new AtomicInteger();
+
+        private volatile boolean retired;
+
+        private JarSlot(String url, JarHolder holder) {
+            this.url = url;
+            this.holder = holder;
+        }
+
+        /**
+         * Prevents the JAR from being closed, until {@link #release()}.
+         *
+         * @return false if the JAR is retired and closed
+         */
+        private boolean acquire() {
+            while (true) {
+                int count = references.get();
+                if (count < 0) {
+                    if (retired) {
+                        return false;
+                    }
+                    // closed by close(), it is opened again on demand
+                    Thread.onSpinWait();
+                } else if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0 && retired) {
+                tryClose();
+            }
+        }
+
+        /**
+         * Must be called while the JAR is acquired.
+         */
+        private JarHolder holder() {
+            JarHolder current = holder;
+            if (current != null) {
+                return current;
+            }
+            synchronized (this) {
+                if (holder == null) {
+                    holder = newHolder(url);
+                }
+                return holder;
+            }
+        }
+
+        private void retire() {
+            retired = true;
+            retiring.add(this);
+            tryClose();
+        }
+
+        private void tryClose() {
+            if (references.compareAndSet(0, -1)) {
+                closeHolder();
+                retiring.remove(this);
+                LOGGER.debug("JarResourceLoader : closed the previous version of '{}'", url);
+            }
+        }
+
+        private void closeIdle() {
+            if (!retired && references.compareAndSet(0, -1)) {
+                closeHolder();
+                references.set(0);
+                if (retired) {
+                    tryClose();
+                }
+            }
+        }
+
+        private synchronized void closeHolder() {
+            if (holder != null) {
+                holder.close();
+                holder = null;
+            }
+        }
+    }
+
+    /**
+     * An entry, keeping its JAR open while its streams are.
+     */
+    private class JarEntryResource implements LuteceResource {
+        protected final JarSlot slot;
+
+        protected final String source;
+
+        protected final LuteceResource entry;
+
+        private final String name;
+
+        private JarEntryResource(JarSlot slot, String source, LuteceResource entry) {
+            this.slot = slot;
+            this.source = source;
+            this.entry = entry;
+            this.name = entry.getName();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (slot.acquire()) {
+                try {
+                    return new ReleasingInputStream(entry.getInputStream(), slot);
+                } catch (IOException | RuntimeException e) {
+                    slot.release();
+                    throw e;
+                }
+            }
+            // the JAR was replaced since the lookup, read the current version of the entry
+            LuteceResource current = lookup(state, source);
+            if (current == null) {
+                throw new FileNotFoundException("JarResourceLoader : " + source + " was removed");
+            }
+            return current.getInputStream();
+        }
+
+        @Override
+        public File getFile() throws IOException {
+            return entry.getFile();
+        }
+
+        @Override
+        public URL getURL() throws IOException {
+            if (slot.acquire()) {
+                try {
+                    return entry.getURL();
+                } finally {
+                    slot.release();
+                }
+            }
+            LuteceResource current = lookup(state, source);
+            return current != null ? current.getURL() : null;
+        }
+
+        @Override
+        public URI getURI() throws IOException {
+            return entry.getURI();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * An entry of a memory-mapped JAR, whose content can be read as a buffer.
+     */
+    private final class BufferedJarEntryResource extends JarEntryResource implements ByteBufferResource {
+
+        private BufferedJarEntryResource(JarSlot slot, String source, LuteceResource entry) {
+            super(slot, source, entry);
+        }
+
+        @Override
+        public ByteBuffer getBuffer() throws IOException {
+            // the buffer is a slice of the mapping, it stays readable once the JAR is closed
+            if (slot.acquire()) {
+                try {
+                    return ((ByteBufferResource) entry).getBuffer();
+                } finally {
+                    slot.release();
+                }
+            }
+            LuteceResource current = lookup(state, source);
+            if (current == null) {
+                throw new FileNotFoundException("JarResourceLoader : " + source + " was removed");
+            }
+            return current instanceof ByteBufferResource ? ((ByteBufferResource) current).getBuffer() : null;
+        }
+    }
+
+    /**
+     * Releases its JAR once closed.
+     */
+    private static final class ReleasingInputStream extends FilterInputStream {
+        private final JarSlot slot;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingInputStream(InputStream in, JarSlot slot) {
+            super(in);
+            this.slot = slot;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    slot.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Thrown when a lookup reaches a JAR closed by a reload.
+     */
+    private static final class StaleGenerationException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private static final StaleGenerationException INSTANCE = new StaleGenerationException();
+
+        private StaleGenerationException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * An immutable generation of the loader.
+     */
+    private static final class State {
+        private static final State EMPTY = new State(JarEntryIndex.EMPTY, List.of(), List.of(), Map.of(), null);
+
+        /**
+         * Maps entries to the ID of their parent JAR (the entries *excluding* plain directories), see
+         * {@link JarEntryIndex}.
+         */
+        private final JarEntryIndex entryDirectory;
+
+        /**
+         * The actual JARs, by ID, null for a removed JAR.
+         */
+        private final List<JarSlot> jars;
+
+        /**
+         * The entries of each JAR, by ID, so that the directory can be rebuilt when a JAR is replaced or removed.
+         */
+        private final List<JarEntryIndex> jarEntries;
+
+        /**
+         * Maps JAR URLs to their ID (key = the JAR URL, value = the position of the JAR in {@link #jars}).
+         */
+        private final Map<String, Integer> jarFiles;
+
+        /**
+         * The Bloom filter of {@link #entryDirectory}, built before the generation is published, or null.
+         */
+        private final BloomFilter filter;
+
+        private State(JarEntryIndex entryDirectory, List<JarSlot> jars, List<JarEntryIndex> jarEntries,
+                Map<String, Integer> jarFiles, BloomFilter filter) {
+            this.entryDirectory = entryDirectory;
+            this.jars = jars;
+            this.jarEntries = jarEntries;
+            this.jarFiles = jarFiles;
+            this.filter = filter;
+        }
+
+        /**
+         * Returns a new generation holding a JAR added or reloaded. Its entries overwrite any duplicate keys of the
+         * JARs added before it.
+         */
+        private State with(int jarId, JarSlot slot, JarEntryIndex entries) {
+            List<JarSlot> newJars = new ArrayList<>(jars);
+            List<JarEntryIndex> newJarEntries = new ArrayList<>(jarEntries);
+            Map<String, Integer> newJarFiles = new LinkedHashMap<>(jarFiles);
+            JarEntryIndex newDirectory;
+            if (jarId < jars.size()) {
+                newJars.set(jarId, slot);
+                newJarEntries.set(jarId, entries);
+                newDirectory = rebuild(newJarEntries);
+            } else {
+                newJars.add(slot);
+                newJarEntries.add(entries);
+                newJarFiles.put(slot.url, jarId);
+                newDirectory = entryDirectory.merge(entries);
+            }
+            return new State(newDirectory, Collections.unmodifiableList(newJars),
+                    Collections.unmodifiableList(newJarEntries), Collections.unmodifiableMap(newJarFiles), null);
+        }
+
+        /**
+         * Returns a new generation without a JAR.
+         */
+        private State without(int jarId) {
+            List<JarSlot> newJars = new ArrayList<>(jars);
+            List<JarEntryIndex> newJarEntries = new ArrayList<>(jarEntries);
+            Map<String, Integer> newJarFiles = new LinkedHashMap<>(jarFiles);
+            newJarFiles.remove(newJars.get(jarId).url);
+            newJars.set(jarId, null);
+            newJarEntries.set(jarId, JarEntryIndex.EMPTY);
+            return new State(rebuild(newJarEntries), Collections.unmodifiableList(newJars),
+                    Collections.unmodifiableList(newJarEntries), Collections.unmodifiableMap(newJarFiles), null);
+        }
+
+        /**
+         * Returns this generation with the Bloom filter of its entries, or without a filter when the probability
+         * disables it.
+         */
+        private State withFilter(Double falsePositiveProbability) {
+            BloomFilter built = null;
+            if (falsePositiveProbability != null && falsePositiveProbability > 0 && falsePositiveProbability < 1) {
+                BloomFilter newFilter = BloomFilter.create(entryDirectory.size(), falsePositiveProbability);
+                entryDirectory.forEach((name, jarId) -> newFilter.put(name));
+                built = newFilter;
+            }
+            return new State(entryDirectory, jars, jarEntries, jarFiles, built);
+        }
+
+        private static JarEntryIndex rebuild(List<JarEntryIndex> jarEntries) {
+            JarEntryIndex directory = JarEntryIndex.EMPTY;
+            for (JarEntryIndex entries : jarEntries) {
+                directory = directory.merge(entries);
+            }
+            return directory;
+        }
+    }
 }
@@ -0,0 +1,555 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import fr.paris.lutece.plugins.resource.LuteceResource;
+
+/**
+ * A {@link JarHolder} which memory-maps the archive and parses its central directory itself, so that reads never go
+ * through the {@link java.net.JarURLConnection} stack: STORED entries are served as read-only slices of the mapping,
+ * DEFLATED entries are inflated straight from it.
+ * <p>
+ * Only local JARs (<code>jar:file:...!/</code>) of less than 2 GiB, without ZIP64 records nor encrypted entries, can
+ * be mapped; {@link #open(String)} fails for the others, which remain readable by a plain {@link JarHolder}.
+ * </p>
+ * <p>
+ * Like {@link java.util.zip.ZipFile}, the holder does not copy the entry names: it keeps the central directory offset
+ * of each entry in an open hash table keyed by the hash of the name bytes, and compares the names in the mapping.
+ * </p>
+ */
+public class MappedJarHolder extends JarHolder {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int FLAG_ENCRYPTED = 1;
+
+    /**
+     * The mapping of the whole archive, null once closed.
+     */
+    private volatile ByteBuffer mapping;
+
+    private final Path jarPath;
+
+    /**
+     * The central directory offset of each entry.
+     */
+    private final int[] entryOffsets;
+
+    /**
+     * The hash of each entry name.
+     */
+    private final int[] entryHashes;
+
+    /**
+     * The next entry in the same bucket, or -1.
+     */
+    private final int[] nextEntries;
+
+    /**
+     * The first entry of each bucket, or -1.
+     */
+    private final int[] buckets;
+
+    private MappedJarHolder(String urlpath, Path jarPath, ByteBuffer mapping, int[] entryOffsets, int entryCount) {
+        super(urlpath, false);
+        this.jarPath = jarPath;
+        this.mapping = mapping;
+        this.entryOffsets = entryOffsets;
+        this.entryHashes = new int[entryCount];
+        this.nextEntries = new int[entryCount];
+        this.buckets = new int[Math.max(1, Integer.highestOneBit(Math.max(1, entryCount)) << 1)];
+        Arrays.fill(buckets, -1);
+        for (int i = 0; i < entryCount; i++) {
+            int offset = entryOffsets[i];
+            int hash = hash(mapping, offset + CENTRAL_HEADER_SIZE, nameLength(mapping, offset));
+            int bucket = hash & (buckets.length - 1);
+            entryHashes[i] = hash;
+            nextEntries[i] = buckets[bucket];
+            buckets[bucket] = i;
+        }
+    }
+
+    /**
+     * Maps a local JAR.
+     *
+     * @param urlpath the JAR URL, <code>jar:file:...!/</code>
+     * @return the holder
+     * @throws IOException if the URL is not a local JAR, or if the archive can't be mapped
+     */
+    public static MappedJarHolder open(String urlpath) throws IOException {
+        Path path = toPath(urlpath);
+        ByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new ZipException("Archive too large to be mapped : " + path);
+            }
+            // the mapping stays valid once the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapping = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int end = findEnd(mapping, path);
+        int entryCount = mapping.getShort(end + 10) & 0xFFFF;
+        long directorySize = mapping.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = mapping.getInt(end + 16) & 0xFFFFFFFFL;
+        if (entryCount == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+            throw new ZipException("ZIP64 archives can't be mapped : " + path);
+        }
+        if (directoryOffset + directorySize > end) {
+            throw new ZipException("Invalid central directory : " + path);
+        }
+
+        int[] entryOffsets = new int[entryCount];
+        int offset = (int) directoryOffset;
+        for (int i = 0; i < entryCount; i++) {
+            if (offset + CENTRAL_HEADER_SIZE > end || mapping.getInt(offset) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory header : " + path);
+            }
+            entryOffsets[i] = offset;
+            // the variable length fields must end within the central directory too, as the names are read in place
+            long next = (long) offset + CENTRAL_HEADER_SIZE + nameLength(mapping, offset)
+                    + (mapping.getShort(offset + 30) & 0xFFFF) + (mapping.getShort(offset + 32) & 0xFFFF);
+            if (next > end) {
+                throw new ZipException("Invalid central directory header : " + path);
+            }
+            offset = (int) next;
+        }
+        return new MappedJarHolder(urlpath, path, mapping, entryOffsets, entryCount);
+    }
+
+    /**
+     * Tells whether a JAR URL designates a local JAR, the only ones which can be mapped.
+     *
+     * @param urlpath the JAR URL
+     * @return true for <code>jar:file:...!/</code> URLs
+     */
+    public static boolean isMappable(String urlpath) {
+        return urlpath != null && urlpath.startsWith("jar:file:") && urlpath.indexOf("!/") == urlpath.length() - 2;
+    }
+
+    /**
+     * @return the path of a local JAR
+     */
+    static Path toPath(String urlpath) throws IOException {
+        if (!isMappable(urlpath)) {
+            throw new ZipException("Not a local JAR : " + urlpath);
+        }
+        try {
+            return Paths.get(new URI(urlpath.substring("jar:".length(), urlpath.length() - 2)));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new ZipException("Not a local JAR : " + urlpath);
+        }
+    }
+
+    /**
+     * Looks for the end of central directory record, backwards, as it may be followed by a comment. The buffer must be
+     * little endian, and end where the archive ends.
+     */
+    static int findEnd(ByteBuffer mapping, Path path) throws ZipException {
+        int limit = Math.max(0, mapping.limit() - END_SIZE - MAX_COMMENT_SIZE);
+        for (int offset = mapping.limit() - END_SIZE; offset >= limit; offset--) {
+            if (mapping.getInt(offset) == END_SIGNATURE
+                    && offset + END_SIZE + (mapping.getShort(offset + 20) & 0xFFFF) == mapping.limit()) {
+                return offset;
+            }
+        }
+        throw new ZipException("End of central directory not found : " + path);
+    }
+
+    private static int nameLength(ByteBuffer mapping, int offset) {
+        return mapping.getShort(offset + 28) & 0xFFFF;
+    }
+
+    private static int hash(ByteBuffer buffer, int offset, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.get(offset + i);
+        }
+        return hash;
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 0;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    private ByteBuffer mapping() throws IOException {
+        ByteBuffer current = mapping;
+        if (current == null) {
+            throw new IOException("JAR closed : " + getUrlPath());
+        }
+        return current;
+    }
+
+    /**
+     * Returns the central directory offset of an entry.
+     *
+     * @return the offset, or -1 if the archive does not hold the entry
+     */
+    private int findEntry(ByteBuffer current, String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        for (int i = buckets[hash & (buckets.length - 1)]; i >= 0; i = nextEntries[i]) {
+            int offset = entryOffsets[i];
+            if (entryHashes[i] == hash && nameLength(current, offset) == key.length
+                    && nameEquals(current, offset + CENTRAL_HEADER_SIZE, key)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean nameEquals(ByteBuffer buffer, int offset, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String name(ByteBuffer buffer, int offset) {
+        byte[] bytes = new byte[nameLength(buffer, offset)];
+        buffer.get(offset + CENTRAL_HEADER_SIZE, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isDirectory(ByteBuffer buffer, int offset) {
+        int length = nameLength(buffer, offset);
+        return length > 0 && buffer.get(offset + CENTRAL_HEADER_SIZE + length - 1) == '/';
+    }
+
+    /**
+     * Returns the raw (possibly compressed) data of an entry, as a read-only slice of the mapping.
+     */
+    private static ByteBuffer rawData(ByteBuffer buffer, int offset) throws ZipException {
+        if ((buffer.getShort(offset + 8) & FLAG_ENCRYPTED) != 0) {
+            throw new ZipException("Encrypted entry : " + name(buffer, offset));
+        }
+        long compressedSize = buffer.getInt(offset + 20) & 0xFFFFFFFFL;
+        int localOffset = buffer.getInt(offset + 42);
+        if (localOffset < 0 || localOffset + LOCAL_HEADER_SIZE > buffer.limit()
+                || buffer.getInt(localOffset) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header : " + name(buffer, offset));
+        }
+        long start = (long) localOffset + LOCAL_HEADER_SIZE + (buffer.getShort(localOffset + 26) & 0xFFFF)
+                + (buffer.getShort(localOffset + 28) & 0xFFFF);
+        if (start + compressedSize > buffer.limit()) {
+            throw new ZipException("Truncated entry : " + name(buffer, offset));
+        }
+        return buffer.slice((int) start, (int) compressedSize).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the content of a STORED entry, without any copy.
+     *
+     * @param name the name of the entry
+     * @return a read-only slice of the mapping, or null if the archive does not hold the entry or if the entry is
+     *         compressed
+     * @throws IOException if the JAR is closed or corrupted
+     */
+    public ByteBuffer getBuffer(String name) throws IOException {
+        ByteBuffer current = mapping();
+        int offset = findEntry(current, name);
+        if (offset < 0 || isDirectory(current, offset) || method(current, offset) != STORED) {
+            return null;
+        }
+        return rawData(current, offset);
+    }
+
+    private static int method(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset + 10) & 0xFFFF;
+    }
+
+    private InputStream openEntry(ByteBuffer current, int offset) throws IOException {
+        ByteBuffer data = rawData(current, offset);
+        switch (method(current, offset)) {
+            case STORED:
+                return new BufferInputStream(data);
+            case DEFLATED:
+                return new InflatingInputStream(data, current.getInt(offset + 24) & 0xFFFFFFFFL);
+            default:
+                throw new ZipException("Unsupported compression method " + method(current, offset) + " : "
+                        + name(current, offset));
+        }
+    }
+
+    /**
+     * Releases the archive. The mapping itself is unmapped once garbage collected.
+     */
+    @Override
+    public void close() {
+        mapping = null;
+    }
+
+    @Override
+    public InputStream getResource(String theentry) throws ResourceNotFoundException {
+        try {
+            ByteBuffer current = mapping();
+            int offset = findEntry(current, theentry);
+            return offset >= 0 ? openEntry(current, offset) : null;
+        } catch (IOException e) {
+            throw new ResourceNotFoundException(e.getMessage());
+        }
+    }
+
+    @Override
+    @Deprecated
+    public Hashtable<String, String> getEntries() {
+        Hashtable<String, String> allEntries = new Hashtable<>(559);
+        ByteBuffer current = mapping;
+        if (current != null) {
+            for (int offset : entryOffsets) {
+                if (!isDirectory(current, offset)) {
+                    allEntries.put(name(current, offset), getUrlPath());
+                }
+            }
+        }
+        return allEntries;
+    }
+
+    @Override
+    public void indexEntries(JarEntryIndex.Builder builder, int jarId) {
+        ByteBuffer current = mapping;
+        if (current != null) {
+            for (int offset : entryOffsets) {
+                // We don't map plain directory entries
+                if (!isDirectory(current, offset)) {
+                    builder.add(name(current, offset), jarId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public LuteceResource getLuteceResource(final String name) {
+        ByteBuffer current = mapping;
+        if (current == null) {
+            return null;
+        }
+        final int offset = findEntry(current, name);
+        if (offset < 0) {
+            return null;
+        }
+        return new EntryResource(name, offset);
+    }
+
+    @Override
+    public String toString() {
+        return "MappedJarHolder[" + jarPath + "]";
+    }
+
+    /**
+     * An entry of a mapped JAR.
+     */
+    public final class EntryResource implements ByteBufferResource {
+        private final String name;
+        private final int offset;
+
+        private EntryResource(String name, int offset) {
+            this.name = name;
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the content of the entry without any copy, if it is STORED.
+         *
+         * @return a read-only slice of the mapping, or null if the entry is compressed
+         * @throws IOException if the JAR is closed or corrupted
+         */
+        @Override
+        public ByteBuffer getBuffer() throws IOException {
+            ByteBuffer current = mapping();
+            return method(current, offset) == STORED ? rawData(current, offset) : null;
+        }
+
+        @Override
+        public File getFile() {
+            return null;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return openEntry(mapping(), offset);
+        }
+
+        @Override
+        public String getName() {
+            return getUrlPath() + name;
+        }
+
+        @Override
+        public URI getURI() {
+            return null;
+        }
+
+        @Override
+        public URL getURL() throws IOException {
+            return new URL(getUrlPath() + name);
+        }
+    }
+
+    /**
+     * Reads a buffer, which already holds the whole content.
+     */
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Inflates a DEFLATED entry, reading the compressed data straight from the mapping.
+     */
+    private static final class InflatingInputStream extends InputStream {
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] single = new byte[1];
+        private long remaining;
+        private boolean padded;
+        private boolean closed;
+
+        InflatingInputStream(ByteBuffer compressed, long size) {
+            inflater.setInput(compressed);
+            remaining = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == 1 ? single[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                while (true) {
+                    int count = inflater.inflate(b, off, len);
+                    if (count > 0) {
+                        remaining -= count;
+                        return count;
+                    }
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        return -1;
+                    }
+                    if (!inflater.needsInput()) {
+                        continue;
+                    }
+                    if (padded) {
+                        throw new EOFException("Unexpected end of ZLIB input stream");
+                    }
+                    // the raw inflater may need an extra dummy byte to detect the end of the data
+                    padded = true;
+                    inflater.setInput(new byte[1]);
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        @Override
+        public int available() {
+            return closed || inflater.finished() ? 0 : (int) Math.min(Integer.MAX_VALUE, Math.max(0, remaining));
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                inflater.end();
+            }
+        }
+    }
+}
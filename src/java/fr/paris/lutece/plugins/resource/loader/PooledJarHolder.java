@@ -0,0 +1,258 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import fr.paris.lutece.plugins.resource.LuteceResource;
+
+/**
+ * A {@link JarHolder} reading a local JAR through several {@link JarFile} handles, so that concurrent reads of the
+ * same JAR do not contend on the locks of a single {@link java.util.zip.ZipFile}.
+ * <p>
+ * The first handle is the one opened by the {@link JarHolder}, and is also used for the entry lookups. The others are
+ * opened on demand. Each stream is read from the handle serving the fewest open streams, so that a handle is never
+ * borrowed exclusively and a reader never waits for one.
+ * </p>
+ */
+public class PooledJarHolder extends JarHolder {
+    private static final Logger LOGGER = LogManager.getLogger(PooledJarHolder.class);
+
+    private final File file;
+
+    /**
+     * The read handles, opened on demand, the first one being the JAR of the holder.
+     */
+    private final AtomicReferenceArray<JarFile> handles;
+
+    /**
+     * The number of open streams of each handle.
+     */
+    private final AtomicIntegerArray openStreams;
+
+    private volatile boolean closed;
+
+    /**
+     * @param urlpath the JAR URL, <code>jar:file:...!/</code>
+     * @param size the number of read handles
+     * @throws IOException if the URL is not a local JAR
+     */
+    public PooledJarHolder(String urlpath, int size) throws IOException {
+        super(requireLocal(urlpath));
+        this.file = MappedJarHolder.toPath(urlpath).toFile();
+        this.handles = new AtomicReferenceArray<>(Math.max(1, size));
+        this.handles.set(0, getJarFile());
+        this.openStreams = new AtomicIntegerArray(handles.length());
+    }
+
+    private static String requireLocal(String urlpath) throws IOException {
+        // fails before the holder opens anything
+        MappedJarHolder.toPath(urlpath);
+        return urlpath;
+    }
+
+    /**
+     * @return the number of read handles
+     */
+    public int getSize() {
+        return handles.length();
+    }
+
+    /**
+     * @return the number of read handles opened so far
+     */
+    public int getOpenHandleCount() {
+        int count = 0;
+        for (int i = 0; i < handles.length(); i++) {
+            if (handles.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the handle serving the fewest open streams.
+     */
+    private int leastBusy() {
+        int best = 0;
+        int bestCount = Integer.MAX_VALUE;
+        for (int i = 0; i < handles.length(); i++) {
+            int count = openStreams.get(i);
+            if (count < bestCount) {
+                best = i;
+                bestCount = count;
+                if (count == 0) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    private JarFile handle(int index) throws IOException {
+        JarFile handle = handles.get(index);
+        if (handle != null) {
+            return handle;
+        }
+        synchronized (handles) {
+            if (closed) {
+                throw new IOException("JAR closed : " + getUrlPath());
+            }
+            handle = handles.get(index);
+            if (handle == null) {
+                handle = new JarFile(file);
+                handles.set(index, handle);
+            }
+            return handle;
+        }
+    }
+
+    /**
+     * Opens an entry on the least busy handle.
+     */
+    private InputStream open(String name) throws IOException {
+        int index = leastBusy();
+        JarFile handle = handle(index);
+        JarEntry entry = handle.getJarEntry(name);
+        if (entry == null) {
+            return null;
+        }
+        openStreams.incrementAndGet(index);
+        try {
+            return new HandleInputStream(handle.getInputStream(entry), index);
+        } catch (IOException | RuntimeException e) {
+            openStreams.decrementAndGet(index);
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (handles) {
+            closed = true;
+            for (int i = 0; i < handles.length(); i++) {
+                JarFile handle = handles.getAndSet(i, null);
+                // the JAR of the holder is closed by the holder
+                if (handle != null && handle != getJarFile()) {
+                    try {
+                        handle.close();
+                    } catch (IOException e) {
+                        LOGGER.debug("PooledJarHolder : failed to close a handle of {}", file, e);
+                    }
+                }
+            }
+        }
+        super.close();
+    }
+
+    @Override
+    public InputStream getResource(String theentry) throws ResourceNotFoundException {
+        try {
+            return open(theentry);
+        } catch (IOException e) {
+            throw new ResourceNotFoundException(e.getMessage());
+        }
+    }
+
+    @Override
+    public LuteceResource getLuteceResource(final String name) {
+        final LuteceResource entry = super.getLuteceResource(name);
+        if (entry == null) {
+            return null;
+        }
+        return new LuteceResource() {
+            @Override
+            public File getFile() throws IOException {
+                return entry.getFile();
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                InputStream in = open(name);
+                if (in == null) {
+                    throw new FileNotFoundException(getName());
+                }
+                return in;
+            }
+
+            @Override
+            public String getName() {
+                return entry.getName();
+            }
+
+            @Override
+            public URI getURI() throws IOException {
+                return entry.getURI();
+            }
+
+            @Override
+            public URL getURL() throws IOException {
+                return entry.getURL();
+            }
+        };
+    }
+
+    /**
+     * Counts the open streams of a handle.
+     */
+    private final class HandleInputStream extends FilterInputStream {
+        private final int index;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private HandleInputStream(InputStream in, int index) {
+            super(in);
+            this.index = index;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    openStreams.decrementAndGet(index);
+                }
+            }
+        }
+    }
+}
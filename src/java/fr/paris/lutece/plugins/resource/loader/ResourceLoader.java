@@ -26,9 +26,15 @@
 package fr.paris.lutece.plugins.resource.loader;
 
 import java.net.URL;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.ResourceGlob;
 /**
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
  * @version $Id$
@@ -42,6 +48,26 @@ public interface ResourceLoader {
     
     void addSearchPath(String path);
 
+    /**
+     * Reloads a search path, so that the resources it no longer holds disappear, and the new ones appear. The default
+     * implementation only adds the search path, which suits the loaders reading their search paths on each lookup.
+     *
+     * @param path the search path
+     */
+    default void reloadSearchPath(String path) {
+        addSearchPath(path);
+    }
+
+    /**
+     * Removes a search path. The default implementation does not support it.
+     *
+     * @param path the search path
+     * @throws UnsupportedOperationException if the loader can't remove search paths
+     */
+    default void removeSearchPath(String path) {
+        throw new UnsupportedOperationException(getId() + " can't remove search paths");
+    }
+
     /**
      * Returns the resource with the given name.
      *
@@ -50,6 +76,40 @@ public interface ResourceLoader {
      * @throws ResourceNotFoundException The resource wasn't found, or wasn't available.
      */
     LuteceResource getResource(String name) throws ResourceNotFoundException;
+
+    /**
+     * Looks up the resource with the given name, without throwing when it is missing.
+     * <p>
+     * The default implementation delegates to {@link #getResource(String)}. Loaders should override it, so that a miss
+     * does not cost an exception.
+     *
+     * @param name The resources name.
+     * @return The resource with the given name, or an empty optional if it wasn't found, or wasn't available.
+     */
+    default Optional<LuteceResource> findResource(String name) {
+        try {
+            return Optional.of(getResource(name));
+        } catch (ResourceNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+    /**
+     * Looks up several resources at once, without throwing for the missing ones.
+     * <p>
+     * The default implementation calls {@link #findResource(String)} for each name. Loaders which can answer a batch
+     * more cheaply than name by name should override it.
+     *
+     * @param names The resources names.
+     * @return The resources found, keyed by their requested name. Missing names have no entry.
+     */
+    default Map<String, LuteceResource> findResources(Collection<String> names) {
+        Map<String, LuteceResource> resources = new LinkedHashMap<>();
+        for (String name : names) {
+            findResource(name).ifPresent(resource -> resources.put(name, resource));
+        }
+        return resources;
+    }
+
     /**
      * Retrieves the resource paths as a Set<URL> from a given directory.
      * This method reads the files in the specified directory, converts their paths to URLs,
@@ -64,6 +124,38 @@ public interface ResourceLoader {
      *                                    the directory or converting paths to URLs.
      */
     Set<URL> getResourceURL(String path) throws ResourceNotFoundException;
+
+    /**
+     * Lists the resources found directly in a directory, across the search paths of the loader. When several search
+     * paths hold a file with the same name, only the one of the first search path is listed.
+     * <p>
+     * The default implementation wraps the URLs of {@link #getResourceURL(String)}. Loaders should override it, so that
+     * the listing is produced lazily, as the stream is consumed. The stream should be closed once consumed.
+     *
+     * @param path The directory path.
+     * @return The resources of the directory, empty if there is none.
+     */
+    default Stream<LuteceResource> listResources(String path) {
+        try {
+            return getResourceURL(path).stream().map(URLLuteceResource::new);
+        } catch (ResourceNotFoundException e) {
+            return Stream.empty();
+        }
+    }
+    /**
+     * Lists the names of the resources matching a glob, as they would be given to {@link #findResource(String)}.
+     * Loaders answer from their in-memory indexes when they have some, and otherwise walk their search paths from the
+     * {@linkplain ResourceGlob#getBase() base directory} of the glob, no deeper than the glob allows.
+     * <p>
+     * The default implementation lists nothing, for the loaders which can't enumerate their resources.
+     *
+     * @param glob The glob.
+     * @return The distinct matching names, lazily, in no particular order.
+     */
+    default Stream<String> matchResources(ResourceGlob glob) {
+        return Stream.empty();
+    }
+
     /**
      * Returns the Identifier Named class
      * @return Identifier Named loader
@@ -5,6 +5,7 @@ import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.servlet.ServletContext;
 import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.ResourceGlob;
 import jakarta.annotation.Priority;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.context.Initialized;
@@ -13,14 +14,20 @@ import jakarta.enterprise.event.Observes;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 
 @Named(ServletContextResourceLoader.ID)
 @ApplicationScoped
 public class ServletContextResourceLoader extends AbstractResourceLoader {
+    private static final Logger LOGGER = LogManager.getLogger(ServletContextResourceLoader.class);
+
     public static final String ID = "servletContext";
 
     private ServletContext servletContext;
@@ -34,23 +41,29 @@ public class ServletContextResourceLoader extends AbstractResourceLoader {
 
     @Override
     public LuteceResource getResource(String name) throws ResourceNotFoundException {
-        if (servletContext == null) {
-            throw new ResourceNotFoundException(name);
+        return findResource(name).orElseThrow(() -> new ResourceNotFoundException(name));
+    }
+
+    @Override
+    public Optional<LuteceResource> findResource(String name) {
+        if (servletContext == null || name == null) {
+            return Optional.empty();
         }
-        if (name != null && name.startsWith("/")) {
+        if (name.startsWith("/")) {
             name = name.substring(1);
         }
         URL url = null;
 		try {
 			url = servletContext.getResource(name);
 		} catch (MalformedURLException e) {
-			throw new ResourceNotFoundException(name, e);
+			LOGGER.debug("ServletContextResourceLoader: No valid path '{}'", name, e);
+			return Optional.empty();
 		}
         if (url == null) {
-            throw new ResourceNotFoundException(name);
+            return Optional.empty();
         }
 
-        return new URLLuteceResource(url);
+        return Optional.of(new URLLuteceResource(url));
     }
     @Override
 	public String getId() {
@@ -98,4 +111,28 @@ public class ServletContextResourceLoader extends AbstractResourceLoader {
         }
         return resourceUrls;
 	}
+
+    /**
+     * Walks the web application from the base directory of the glob, no deeper than the glob allows.
+     */
+    @Override
+    public Stream<String> matchResources(ResourceGlob glob) {
+        if (servletContext == null) {
+            return Stream.empty();
+        }
+        return walk("/" + glob.getBase(), glob.getMaxDepth()).filter(glob::matches);
+    }
+
+    private Stream<String> walk(String directory, int depth) {
+        Set<String> resourcePaths = servletContext.getResourcePaths(directory);
+        if (resourcePaths == null) {
+            return Stream.empty();
+        }
+        return resourcePaths.stream().flatMap(path -> {
+            if (!path.endsWith("/")) {
+                return Stream.of(path.substring(1));
+            }
+            return depth > 1 ? walk(path, depth - 1) : Stream.empty();
+        });
+    }
 }
@@ -29,12 +29,16 @@ import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
 import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.ResourceGlob;
+import fr.paris.lutece.plugins.resource.util.ResourceListings;
 import jakarta.enterprise.context.ApplicationScoped;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -42,10 +46,16 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 /**
@@ -55,36 +65,85 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 @Named(ThreadContextClasspathResourceLoader.ID)
 @ApplicationScoped
 public class ThreadContextClasspathResourceLoader extends AbstractResourceLoader {
+    private static final Logger LOGGER = LogManager.getLogger(ThreadContextClasspathResourceLoader.class);
+
     public static final String ID = "classloader";
     @Inject
     @ConfigProperty(name="ordinalValue.resourceLoader.classloader", defaultValue="400")
     private Integer ordinalValue;
 
+    /**
+     * Whether lookups are answered from an index of the context class loader's URLs instead of
+     * <code>ClassLoader.getResource</code>.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.classloader.indexed", defaultValue="false")
+    private Boolean indexed;
+
+    /**
+     * Maximum number of jars whose directory listing is kept in memory.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.classloader.jarListings", defaultValue="256")
+    private Integer jarListings;
+
+    private volatile JarDirectoryListings listings;
+
+    /**
+     * Switches the indexed mode on or off. In the indexed mode, the URLs of each context class loader are enumerated
+     * once into a {@link ClasspathIndex}, and the names it does not hold are only looked up among the JDK resources.
+     *
+     * @param indexed <code>true</code> to answer lookups from the index
+     */
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
+    }
+
     // ----------------------------------------------------------------------
     // ResourceLoader Implementation
     // ----------------------------------------------------------------------
 
     @Override
     public LuteceResource getResource(String name) throws ResourceNotFoundException {
+        return findResource(name).orElseThrow(() -> new ResourceNotFoundException(name));
+    }
+
+    @Override
+    public Optional<LuteceResource> findResource(String name) {
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 
-        if (classLoader == null) {
-            throw new ResourceNotFoundException(name);
+        if (classLoader == null || name == null) {
+            return Optional.empty();
         }
 
-        if (name != null && name.startsWith("/")) {
+        if (name.startsWith("/")) {
             name = name.substring(1);
         }
 
-        final URL url = classLoader.getResource(name);
+        final URL url = getResource(classLoader, name);
         if (url == null) {
-            throw new ResourceNotFoundException(name);
+            return Optional.empty();
         }
 
-        return new URLLuteceResource(url);
+        return Optional.of(new URLLuteceResource(url));
     }
     
     
+    /**
+     * Looks a name up through the index of the class loader, when there is one. The index only holds files : a
+     * directory name, ending with a slash, is looked up through the class loader.
+     */
+    private URL getResource(ClassLoader classLoader, String name) {
+        if (Boolean.TRUE.equals(indexed) && !name.endsWith("/")) {
+            Optional<ClasspathIndex> index = ClasspathIndex.forClassLoader(classLoader);
+            if (index.isPresent()) {
+                URL url = index.get().find(name);
+                return url != null ? url : ClassLoader.getPlatformClassLoader().getResource(name);
+            }
+        }
+        return classLoader.getResource(name);
+    }
+
     @Override
 	public Set<URL> getResourceURL(String path) throws ResourceNotFoundException {				
 		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
@@ -103,7 +162,16 @@ public class ThreadContextClasspathResourceLoader extends AbstractResourceLoader
             throw new ResourceNotFoundException(path);
 		}
 		
-		Path pathDir = Paths.get(url.getPath( ));
+		if ("jar".equals(url.getProtocol())) {
+			return listJar(url, path);
+		}
+
+		Path pathDir;
+		try {
+			pathDir = Paths.get(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			throw new ResourceNotFoundException("Cannot list the resources of the path : " + path, e);
+		}
 		
         Set<URL> listUrl = new HashSet<>();
 		try (Stream<Path> stream = Files.walk(pathDir, 1)) {
@@ -124,6 +192,117 @@ public class ThreadContextClasspathResourceLoader extends AbstractResourceLoader
             throw new ResourceNotFoundException("Error while reading files in the path : " + path, e);
         }
    }
+
+	/**
+	 * Lists a directory packaged in a jar, from the cached listing of the jar's central directory.
+	 */
+	private Set<URL> listJar(URL url, String path) throws ResourceNotFoundException {
+		try {
+			Set<URL> listUrl = getJarListings().list(url);
+			if (listUrl.isEmpty()) {
+				throw new ResourceNotFoundException("No resources found in the path : " + path);
+			}
+			return listUrl;
+		} catch (IOException e) {
+			throw new ResourceNotFoundException("Error while reading files in the path : " + path, e);
+		}
+	}
+
+	private JarDirectoryListings getJarListings() {
+		JarDirectoryListings jarListing = listings;
+		if (jarListing == null) {
+			synchronized (this) {
+				if (listings == null) {
+					listings = new JarDirectoryListings(jarListings != null ? jarListings : 256);
+				}
+				jarListing = listings;
+			}
+		}
+		return jarListing;
+	}
+
+    /**
+     * Lists the directory in every location of the class path holding it, in the order of
+     * <code>ClassLoader.getResources</code>, each location being read only when the listing reaches it.
+     */
+    @Override
+    public Stream<LuteceResource> listResources(String path) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            return Stream.empty();
+        }
+        String prefix = ResourceListings.toDirectoryPrefix(path);
+        Enumeration<URL> directories;
+        try {
+            directories = classLoader.getResources(prefix);
+        } catch (IOException e) {
+            LOGGER.debug("Cannot list the class path directories '{}'", prefix, e);
+            return Stream.empty();
+        }
+        Stream<URL> files = StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(directories.asIterator(), Spliterator.ORDERED), false)
+                .flatMap(this::listDirectory);
+        return ResourceListings.distinctFileNames(files.map(URLLuteceResource::new));
+    }
+
+    private Stream<URL> listDirectory(URL directory) {
+        try {
+            if ("jar".equals(directory.getProtocol())) {
+                return getJarListings().list(directory).stream();
+            }
+            return ResourceListings.listFiles(Paths.get(directory.toURI())).map(file -> {
+                try {
+                    return file.toUri().toURL();
+                } catch (MalformedURLException e) {
+                    throw new IllegalArgumentException(e);
+                }
+            });
+        } catch (IOException | URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+            LOGGER.debug("Cannot list the class path directory '{}'", directory, e);
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Matches the glob against the class path index in the indexed mode. Otherwise, walks every class path location
+     * holding the base directory of the glob, using the cached JAR listings for jar: URLs.
+     */
+    @Override
+    public Stream<String> matchResources(ResourceGlob glob) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            return Stream.empty();
+        }
+        if (Boolean.TRUE.equals(indexed)) {
+            Optional<ClasspathIndex> index = ClasspathIndex.forClassLoader(classLoader);
+            if (index.isPresent()) {
+                return index.get().names().filter(glob::matches);
+            }
+        }
+        Enumeration<URL> directories;
+        try {
+            directories = classLoader.getResources(glob.getBase());
+        } catch (IOException e) {
+            LOGGER.debug("Cannot list the class path directories '{}'", glob.getBase(), e);
+            return Stream.empty();
+        }
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(directories.asIterator(), Spliterator.ORDERED), false)
+                .flatMap(directory -> walk(directory, glob)).filter(glob::matches).distinct();
+    }
+
+    private Stream<String> walk(URL directory, ResourceGlob glob) {
+        try {
+            if ("jar".equals(directory.getProtocol())) {
+                return getJarListings().names(directory);
+            }
+            return ResourceListings.walkNames(Paths.get(directory.toURI()), glob.getBase(), glob.getMaxDepth());
+        } catch (IOException | URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+            LOGGER.debug("Cannot walk the class path directory '{}'", directory, e);
+            return Stream.empty();
+        }
+    }
+
 	private  URL toURL(Path path) throws ResourceNotFoundException {
         try {
             return path.toUri().toURL();
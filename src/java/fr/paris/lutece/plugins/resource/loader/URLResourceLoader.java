@@ -24,23 +24,37 @@ package fr.paris.lutece.plugins.resource.loader;
  * 
  * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
  */
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.Dependent;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.JarURLConnection;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.HashMap;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.cache.TimedLruCache;
+import fr.paris.lutece.plugins.resource.util.FileUtils;
 
 /**
  * @author Jason van Zyl
@@ -55,7 +69,190 @@ public class URLResourceLoader extends AbstractResourceLoader {
     @ConfigProperty(name="ordinalValue.resourceLoader.url", defaultValue="200")
     private Integer ordinalValue;
 
-    protected Map<String, String> templateRoots = new HashMap<>();
+    /**
+     * Maximum time, in milliseconds, to establish a connection to a remote server.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.connectTimeout", defaultValue="5000")
+    private Long connectTimeout;
+
+    /**
+     * Maximum time, in milliseconds, to wait for the response of a remote server.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.readTimeout", defaultValue="30000")
+    private Long readTimeout;
+
+    /**
+     * Whether HTTP/2 is negotiated with the remote servers offering it.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.http2", defaultValue="true")
+    private Boolean http2;
+
+    /**
+     * Directory of the disk cache of the remote resources.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.cacheDirectory")
+    private Optional<String> cacheDirectory;
+
+    /**
+     * Maximum total size, in bytes, of the disk cache of the remote resources. <code>0</code> does not bound it.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.cacheMaxSize", defaultValue="268435456")
+    private Long cacheMaxSize;
+
+    /**
+     * Time, in milliseconds, after which a remote resource which was not validated is dropped from the disk cache.
+     * <code>0</code> does not bound it.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.cacheMaxAge", defaultValue="604800000")
+    private Long cacheMaxAge;
+
+    /**
+     * The cache directory created by this loader when none is configured, deleted when the loader is closed.
+     */
+    private Path temporaryCacheDirectory;
+
+    /**
+     * Whether the cached remote resources are served without waiting on the network, and refreshed in the background.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.refreshAhead", defaultValue="false")
+    private Boolean refreshAhead;
+
+    /**
+     * Age, in milliseconds, after which a cached remote resource is refreshed in the background.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.softTtl", defaultValue="60000")
+    private Long softTtl;
+
+    /**
+     * Age, in milliseconds, after which a cached remote resource is revalidated before being served.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.hardTtl", defaultValue="86400000")
+    private Long hardTtl;
+
+    /**
+     * Number of threads refreshing the remote resources in the background.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.refreshThreads", defaultValue="2")
+    private Integer refreshThreads;
+
+    /**
+     * Maximum number of background refreshes waiting for a thread.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.refreshQueueSize", defaultValue="256")
+    private Integer refreshQueueSize;
+
+    /**
+     * Whether a cached remote resource is served when it can't be revalidated.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.serveStaleOnError", defaultValue="true")
+    private Boolean serveStaleOnError;
+
+    /**
+     * Maximum number of names whose root is remembered.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.rootAffinity.maxSize", defaultValue="1024")
+    private Integer rootAffinityMaxSize;
+
+    /**
+     * Time to live, in milliseconds, of a remembered root. <code>0</code> or less keeps them until they fail.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.rootAffinity.ttl", defaultValue="300000")
+    private Long rootAffinityTtl;
+
+    /**
+     * Number of consecutive failures after which a remote root is skipped. <code>0</code> disables the circuit breakers.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.circuitBreaker.failureThreshold", defaultValue="5")
+    private Integer circuitFailureThreshold;
+
+    /**
+     * Time, in milliseconds, during which a failing remote root is skipped before a trial lookup.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.circuitBreaker.openDuration", defaultValue="30000")
+    private Long circuitOpenDuration;
+
+    /**
+     * Maximum number of concurrent requests to a remote host. <code>0</code> does not limit them.
+     */
+    @Inject
+    @ConfigProperty(name="resourceLoader.url.maxConcurrentRequestsPerHost", defaultValue="16")
+    private Integer maxConcurrentRequestsPerHost;
+
+    private volatile HttpResourceFetcher fetcher;
+
+    /**
+     * The circuit breaker of each remote root, created on its first lookup.
+     */
+    private final Map<String, CircuitBreaker> circuits = new ConcurrentHashMap<>();
+
+    /**
+     * The root where each name was last found, tried first by the next lookup of that name. Created on the first hit.
+     */
+    protected volatile TimedLruCache<String, String> templateRoots;
+
+    /**
+     * Sets the directory of the disk cache of the remote resources. It must be set before the first remote lookup.
+     *
+     * @param cacheDirectory the directory, created if missing
+     */
+    public void setCacheDirectory(Path cacheDirectory) {
+        this.cacheDirectory = Optional.of(cacheDirectory.toString());
+    }
+
+    /**
+     * Switches the refresh-ahead mode on or off. It must be set before the first remote lookup.
+     *
+     * @param refreshAhead <code>true</code> to serve the cached remote resources and refresh them in the background
+     */
+    public void setRefreshAhead(boolean refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    /**
+     * Sets the time after which a remembered root is dropped. It must be set before the first lookup.
+     *
+     * @param rootAffinityTtl the time to live in milliseconds, <code>0</code> or less to keep the roots until they fail
+     */
+    public void setRootAffinityTtl(long rootAffinityTtl) {
+        this.rootAffinityTtl = rootAffinityTtl;
+    }
+
+    /**
+     * Stops the background refreshes of the remote resources, and deletes the cache directory created by the loader
+     * when none was configured.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (fetcher != null) {
+            fetcher.close();
+            fetcher = null;
+        }
+        if (temporaryCacheDirectory != null) {
+            try {
+                FileUtils.forceDelete(temporaryCacheDirectory.toFile());
+            } catch (IOException e) {
+                LOGGER.debug("URLResourceLoader: Could not delete the cache directory '{}'", temporaryCacheDirectory,
+                        e);
+            }
+            temporaryCacheDirectory = null;
+        }
+    }
 
     /**
      * Get an {@link LuteceResource} with given name.
@@ -70,38 +267,39 @@ public class URLResourceLoader extends AbstractResourceLoader {
             throw new ResourceNotFoundException("URLResourceLoader : No template name provided");
         }
 
+        // convert to a general Velocity ResourceNotFoundException
+        return findResource(name).orElseThrow(() -> new ResourceNotFoundException(name));
+    }
+
+    @Override
+    public Optional<LuteceResource> findResource(String name) {
+        if (name == null || name.length() == 0) {
+            return Optional.empty();
+        }
+
+        // try the root where the name was last found first
+        TimedLruCache<String, String> roots = templateRoots;
+        String remembered = roots != null ? roots.get(name) : null;
+        if (remembered != null) {
+            Optional<LuteceResource> resource = paths.contains(remembered) ? findResource(remembered, name)
+                    : Optional.empty();
+            if (resource.isPresent()) {
+                return resource;
+            }
+            roots.remove(name);
+        }
+
         for (String path : paths) {
-            try {
-                URL u;
-                if(isPathInArchive(name)){
-             	    u = new URL("jar:"+path +name);
-                 }else {
-                 	u = new URL(path + name);
-                 }
-                final InputStream inputStream = u.openStream();
-
-                if (inputStream != null) {
-                    LOGGER.debug("URLResourceLoader: Found '{}' at '{}'", name, path);
-
-                    // save this root for later re-use
-                    templateRoots.put(name, path);
-
-                    return new URLLuteceResource(u) {
-                        private boolean useSuper;
-
-                        public synchronized InputStream getInputStream() throws IOException {
-                            if (!useSuper) {
-                                useSuper = true;
-                                return inputStream;
-                            }
-                            return super.getInputStream();
-                        }
-                    };
-                }
-            } catch (MalformedURLException mue) {
-                LOGGER.debug("URLResourceLoader: No valid URL '{}{}'", path, name);
-            } catch (IOException ioe) {
-                LOGGER.debug("URLResourceLoader: Exception when looking for '{}' at '{}'", name, path, ioe);
+            if (path.equals(remembered)) {
+                continue;
+            }
+            Optional<LuteceResource> resource = findResource(path, name);
+
+            if (resource.isPresent()) {
+                // save this root for later re-use
+                getTemplateRoots().put(name, path);
+
+                return resource;
             }
         }
         // here we try to download without any path just the name which can be an url
@@ -112,28 +310,242 @@ public class URLResourceLoader extends AbstractResourceLoader {
             }else {
             	u = new URL(name);
             }
-            final InputStream inputStream = u.openStream();
-            if (inputStream != null) {
-                return new URLLuteceResource(u) {
-                    private boolean useSuper;
-                    public synchronized InputStream getInputStream() throws IOException {
-                        if (!useSuper) {
-                            useSuper = true;
-                            return inputStream;
-                        }
-                        return super.getInputStream();
-                    }
-                };
-            }
+            return open(u, null);
         } catch (MalformedURLException mue) {
             LOGGER.debug("URLResourceLoader: No valid URL '{}'", name);
         } catch (IOException ioe) {
             LOGGER.debug("URLResourceLoader: Exception when looking for '{}'", name, ioe);
         }
 
-        // convert to a general Velocity ResourceNotFoundException
-        throw new ResourceNotFoundException(name);
+        return Optional.empty();
+    }
+
+    /**
+     * Looks for a resource under a single root.
+     *
+     * @param path the root
+     * @param name the name of the resource
+     * @return the resource, or an empty optional if the root does not have it or can't be reached
+     */
+    private Optional<LuteceResource> findResource(String path, String name) {
+        CircuitBreaker.Permit permit = null;
+        try {
+            URL u;
+            if(isPathInArchive(name)){
+         	    u = new URL("jar:"+path +name);
+             }else {
+             	u = new URL(path + name);
+             }
+            CircuitBreaker circuit = getCircuit(path, u);
+            permit = circuit != null ? circuit.acquire() : null;
+            if (circuit != null && permit == null) {
+                // the root keeps failing : it is not waited on, only its cached copies are served
+                LOGGER.debug("URLResourceLoader: Skipping '{}' whose circuit is open", path);
+                URI uri = toURI(u);
+                HttpResourceFetcher httpFetcher = getFetcher();
+                return httpFetcher.serveCached(uri).map(entry -> new HttpLuteceResource(u, uri, httpFetcher, entry));
+            }
+            Optional<LuteceResource> resource = open(u, permit);
+
+            if (resource.isPresent()) {
+                LOGGER.debug("URLResourceLoader: Found '{}' at '{}'", name, path);
+            }
+            return resource;
+        } catch (MalformedURLException mue) {
+            LOGGER.debug("URLResourceLoader: No valid URL '{}{}'", path, name);
+        } catch (IOException ioe) {
+            LOGGER.debug("URLResourceLoader: Exception when looking for '{}' at '{}'", name, path, ioe);
+        } finally {
+            // ends the call if no outcome was recorded, whatever went wrong
+            if (permit != null) {
+                permit.close();
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Checks that a URL designates a resource without reading it : HTTP resources are probed with a
+     * <code>HEAD</code> request, <code>file:</code> URLs with a file system lookup and <code>jar:</code> URLs with a
+     * lookup in the directory of the archive. The body is only opened by {@link LuteceResource#getInputStream()}.
+     *
+     * @param u the URL
+     * @param permit the circuit breaker permit of the root of a remote URL, which is told the outcome of the probe, or
+     *        null
+     * @return the resource, or an empty optional if it does not exist
+     * @throws IOException if the URL can't be checked
+     */
+    private Optional<LuteceResource> open(URL u, CircuitBreaker.Permit permit) throws IOException {
+        String protocol = u.getProtocol();
+        if ("http".equals(protocol) || "https".equals(protocol)) {
+            URI uri = toURI(u);
+            HttpResourceFetcher httpFetcher = getFetcher();
+            Optional<HttpResourceFetcher.Probe> probe;
+            try {
+                probe = httpFetcher.probe(uri);
+            } catch (IOException e) {
+                record(permit, e);
+                throw e;
+            }
+            // a stale copy served instead of the resource is a failure of the root all the same
+            record(permit, probe.flatMap(HttpResourceFetcher.Probe::getFailure).orElse(null));
+            return probe.map(p -> new HttpLuteceResource(u, uri, httpFetcher, p.getEntry().orElse(null)));
+        }
+        if ("file".equals(protocol)) {
+            Path file;
+            try {
+                file = Paths.get(toURI(u));
+            } catch (IllegalArgumentException e) {
+                throw new MalformedURLException(e.getMessage());
+            }
+            return Files.isRegularFile(file) ? Optional.of(new URLLuteceResource(u)) : Optional.empty();
+        }
+        URLConnection connection = u.openConnection();
+        if (connection instanceof JarURLConnection) {
+            try {
+                // reads the directory of the archive only, the entry is not opened
+                return ((JarURLConnection) connection).getJarEntry() != null ? Optional.of(new URLLuteceResource(u))
+                        : Optional.empty();
+            } catch (FileNotFoundException e) {
+                return Optional.empty();
+            }
+        }
+        // other protocols can only be checked by opening the resource, this stream is not handed out
+        try (InputStream inputStream = connection.getInputStream()) {
+            return inputStream != null ? Optional.of(new URLLuteceResource(u)) : Optional.empty();
+        }
     }
+
+    /**
+     * Tells a circuit breaker permit the outcome of a probe. A request rejected because its host is busy says nothing about
+     * the health of the root.
+     */
+    private static void record(CircuitBreaker.Permit permit, IOException failure) {
+        if (permit == null) {
+            return;
+        }
+        if (failure == null) {
+            permit.onSuccess();
+        } else if (failure instanceof HttpResourceFetcher.HostBusyException) {
+            permit.close();
+        } else {
+            permit.onFailure();
+        }
+    }
+
+    /**
+     * @return the circuit breaker of the root of a remote URL, or null for the local URLs or when the breakers are
+     *         disabled
+     */
+    private CircuitBreaker getCircuit(String path, URL u) {
+        int threshold = circuitFailureThreshold != null ? circuitFailureThreshold : 5;
+        if (threshold <= 0 || !("http".equals(u.getProtocol()) || "https".equals(u.getProtocol()))) {
+            return null;
+        }
+        return circuits.computeIfAbsent(path, key -> new CircuitBreaker(threshold,
+                circuitOpenDuration != null ? circuitOpenDuration : 30000));
+    }
+
+    /**
+     * Returns the state of the circuit breaker of each remote root looked up so far.
+     *
+     * @return the states, by root
+     */
+    public Map<String, CircuitBreaker.State> getCircuitStates() {
+        Map<String, CircuitBreaker.State> states = new TreeMap<>();
+        circuits.forEach((path, circuit) -> states.put(path, circuit.getState()));
+        return states;
+    }
+
+    /**
+     * Returns the number of lookups which skipped a remote root because its circuit was open.
+     *
+     * @return the number of rejected lookups
+     */
+    public long getCircuitRejectionCount() {
+        return circuits.values().stream().mapToLong(CircuitBreaker::getRejectedCount).sum();
+    }
+
+    /**
+     * Returns the number of requests rejected because their host had too many requests in progress.
+     *
+     * @return the number of rejected requests
+     */
+    public long getBulkheadRejectionCount() {
+        HttpResourceFetcher httpFetcher = fetcher;
+        return httpFetcher != null ? httpFetcher.getBulkheadRejectionCount() : 0;
+    }
+
+    private static URI toURI(URL u) throws MalformedURLException {
+        try {
+            return u.toURI();
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException(e.getMessage());
+        }
+    }
+
+    /**
+     * @return the remembered roots, created on the first hit
+     */
+    private TimedLruCache<String, String> getTemplateRoots() {
+        TimedLruCache<String, String> roots = templateRoots;
+        if (roots == null) {
+            synchronized (this) {
+                if (templateRoots == null) {
+                    long ttl = rootAffinityTtl != null ? rootAffinityTtl : 300000;
+                    if (ttl > 0 && refreshAhead != null && refreshAhead) {
+                        // the roots are only looked up again in order once the cached copies must be revalidated, so
+                        // that the lookup of a name served by a later root does not wait on the earlier ones
+                        ttl = Math.max(ttl, hardTtl != null ? hardTtl : 86400000);
+                    }
+                    templateRoots = new TimedLruCache<>(rootAffinityMaxSize != null ? rootAffinityMaxSize : 1024, ttl);
+                }
+                roots = templateRoots;
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * @return the fetcher of the HTTP resources, created on the first remote lookup
+     * @throws IOException if the cache directory can't be created
+     */
+    protected HttpResourceFetcher getFetcher() throws IOException {
+        HttpResourceFetcher httpFetcher = fetcher;
+        if (httpFetcher == null) {
+            synchronized (this) {
+                if (fetcher == null) {
+                    Path directory;
+                    if (cacheDirectory != null && cacheDirectory.isPresent()) {
+                        directory = Paths.get(cacheDirectory.get());
+                    } else {
+                        // a private directory : a shared, predictable path could be filled by another user
+                        directory = HttpResourceFetcher.createTemporaryCacheDirectory();
+                        temporaryCacheDirectory = directory;
+                    }
+                    HttpResourceFetcher created = new HttpResourceFetcher(
+                            Duration.ofMillis(connectTimeout != null ? connectTimeout : 5000),
+                            Duration.ofMillis(readTimeout != null ? readTimeout : 30000), http2 == null || http2,
+                            directory);
+                    created.setServeStaleOnError(serveStaleOnError == null || serveStaleOnError);
+                    created.setMaxCacheSize(cacheMaxSize != null ? cacheMaxSize : 268435456L);
+                    created.setMaxCacheAge(Duration.ofMillis(cacheMaxAge != null ? cacheMaxAge : 604800000L));
+                    created.setMaxConcurrentRequestsPerHost(
+                            maxConcurrentRequestsPerHost != null ? maxConcurrentRequestsPerHost : 16);
+                    if (refreshAhead != null && refreshAhead) {
+                        created.enableRefreshAhead(Duration.ofMillis(softTtl != null ? softTtl : 60000),
+                                Duration.ofMillis(hardTtl != null ? hardTtl : 86400000),
+                                refreshThreads != null ? refreshThreads : 2,
+                                refreshQueueSize != null ? refreshQueueSize : 256);
+                    }
+                    fetcher = created;
+                }
+                httpFetcher = fetcher;
+            }
+        }
+        return httpFetcher;
+    }
+
     @Override
 	public String getId() {
 		return ID;
@@ -0,0 +1,164 @@
+package fr.paris.lutece.plugins.resource.util;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Executors shared by the resource component, and helpers to run lookups on them.
+ */
+public final class ResourceExecutors {
+
+    /**
+     * The number of platform threads of the asynchronous lookups when virtual threads are not available.
+     */
+    private static final int ASYNC_THREADS = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The number of asynchronous lookups waiting for a platform thread beyond which new ones are rejected.
+     */
+    private static final int ASYNC_QUEUE_CAPACITY = 1024;
+
+    private ResourceExecutors() {
+    }
+
+    /**
+     * Returns the executor used to resolve resources concurrently when none is configured. It is shared by every
+     * resource manager, and its daemon threads are reclaimed when idle.
+     *
+     * @return the shared executor
+     */
+    public static ExecutorService sharedExecutor() {
+        return SharedExecutorHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the default executor of asynchronous lookups : a virtual thread per task executor when the runtime
+     * supports virtual threads. Otherwise, a bounded pool of daemon platform threads, which rejects the lookups with
+     * a <code>RejectedExecutionException</code> once its queue is full.
+     *
+     * @return the executor of asynchronous lookups
+     */
+    public static ExecutorService asyncExecutor() {
+        return AsyncExecutorHolder.INSTANCE;
+    }
+
+    /**
+     * Creates a bounded pool of daemon threads, reclaimed when idle, which rejects the tasks once its queue is full.
+     *
+     * @param prefix the prefix of the thread names
+     * @param threads the maximum number of threads
+     * @param queueCapacity the maximum number of tasks waiting for a thread
+     * @return the executor
+     */
+    static ThreadPoolExecutor boundedExecutor(String prefix, int threads, int queueCapacity) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), daemonThreadFactory(prefix),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Returns a thread factory creating daemon threads with the given name prefix.
+     *
+     * @param prefix the prefix of the thread names
+     * @return the thread factory
+     */
+    public static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Wraps a task so that it runs with the context class loader of the calling thread, which the classpath resource
+     * loader relies upon.
+     *
+     * @param <T> the type of the result
+     * @param task the task
+     * @return the wrapped task
+     */
+    public static <T> Supplier<T> withContextClassLoader(Supplier<T> task) {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return () -> {
+            Thread thread = Thread.currentThread();
+            ClassLoader previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(classLoader);
+            try {
+                return task.get();
+            } finally {
+                thread.setContextClassLoader(previous);
+            }
+        };
+    }
+
+    /**
+     * Wraps a task so that it runs with the context class loader of the calling thread.
+     *
+     * @param task the task
+     * @return the wrapped task
+     */
+    public static Runnable withContextClassLoader(Runnable task) {
+        Supplier<Void> wrapped = withContextClassLoader(() -> {
+            task.run();
+            return null;
+        });
+        return wrapped::get;
+    }
+
+    private static final class SharedExecutorHolder {
+        private static final ExecutorService INSTANCE = Executors
+                .newCachedThreadPool(daemonThreadFactory("lutece-resources"));
+    }
+
+    private static final class AsyncExecutorHolder {
+        private static final ExecutorService INSTANCE = createAsyncExecutor();
+
+        private static ExecutorService createAsyncExecutor() {
+            try {
+                // Executors.newVirtualThreadPerTaskExecutor() is only available from Java 21
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return boundedExecutor("lutece-resources-async", ASYNC_THREADS, ASYNC_QUEUE_CAPACITY);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package fr.paris.lutece.plugins.resource.util;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.util.regex.Pattern;
+
+/**
+ * A compiled glob over resource names, such as <code>templates/**&#47;*.html</code> or
+ * <code>sql/plugins/*&#47;init_*.sql</code>.
+ * <p>
+ * Names are matched segment by segment, '/' being the separator : <code>*</code> matches any part of a segment,
+ * <code>?</code> matches one character of a segment, and a <code>**</code> segment matches any number of segments,
+ * including none. A leading '/' is ignored, as for resource names.
+ * <p>
+ * The literal segments before the first wildcard form the {@linkplain #getBase() base directory}, where the loaders
+ * start their walk or their index scan, and the number of segments after it bounds the {@linkplain #getMaxDepth()
+ * depth} of the walk.
+ */
+public final class ResourceGlob {
+    private static final String ANY_SEGMENTS = "**";
+
+    private final String glob;
+    private final String base;
+    private final int maxDepth;
+    private final Pattern pattern;
+
+    private ResourceGlob(String glob, String base, int maxDepth, Pattern pattern) {
+        this.glob = glob;
+        this.base = base;
+        this.maxDepth = maxDepth;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Compiles a glob.
+     *
+     * @param glob the glob
+     * @return the compiled glob
+     * @throws IllegalArgumentException if the glob is empty
+     */
+    public static ResourceGlob compile(String glob) {
+        String normalized = glob == null ? "" : glob.replace('\\', '/');
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Empty resource glob");
+        }
+        String[] segments = normalized.split("/", -1);
+        StringBuilder base = new StringBuilder();
+        StringBuilder regex = new StringBuilder();
+        int depth = 0;
+        boolean wildcard = false;
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean last = i == segments.length - 1;
+            if (!wildcard && !last && !isWildcard(segment)) {
+                base.append(segment).append('/');
+                regex.append(Pattern.quote(segment + "/"));
+                continue;
+            }
+            wildcard = true;
+            if (ANY_SEGMENTS.equals(segment)) {
+                depth = Integer.MAX_VALUE;
+                regex.append(last ? ".*" : "(?:[^/]*/)*");
+                continue;
+            }
+            if (depth < Integer.MAX_VALUE) {
+                depth++;
+            }
+            appendSegment(regex, segment);
+            if (!last) {
+                regex.append('/');
+            }
+        }
+        return new ResourceGlob(normalized, base.toString(), depth, Pattern.compile(regex.toString()));
+    }
+
+    private static boolean isWildcard(String segment) {
+        return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0;
+    }
+
+    private static void appendSegment(StringBuilder regex, String segment) {
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? "[^/]*" : "[^/]");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+    }
+
+    /**
+     * Tells whether a resource name matches the glob.
+     *
+     * @param name the resource name
+     * @return true if the name matches
+     */
+    public boolean matches(String name) {
+        if (name == null) {
+            return false;
+        }
+        int start = 0;
+        while (start < name.length() && name.charAt(start) == '/') {
+            start++;
+        }
+        return pattern.matcher(name).region(start, name.length()).matches();
+    }
+
+    /**
+     * @return the literal directory the matching names are in, with a trailing '/', or an empty string when the
+     *         first segment holds a wildcard
+     */
+    public String getBase() {
+        return base;
+    }
+
+    /**
+     * @return the maximum number of segments of a matching name below the {@linkplain #getBase() base directory}, or
+     *         {@link Integer#MAX_VALUE} when the glob holds a <code>**</code> segment
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return the glob, without its leading '/'
+     */
+    @Override
+    public String toString() {
+        return glob;
+    }
+}
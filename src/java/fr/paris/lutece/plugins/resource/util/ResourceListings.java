@@ -0,0 +1,151 @@
+package fr.paris.lutece.plugins.resource.util;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import fr.paris.lutece.plugins.resource.LuteceResource;
+
+/**
+ * Helpers to list the resources of a directory as lazy streams.
+ */
+public final class ResourceListings {
+
+    private ResourceListings() {
+    }
+
+    /**
+     * Normalizes a directory path into the prefix of the names it holds : no leading slash, and a trailing one unless
+     * the directory is the root.
+     *
+     * @param path the directory path
+     * @return the prefix, empty for the root
+     */
+    public static String toDirectoryPrefix(String path) {
+        String prefix = path == null ? "" : path;
+        while (prefix.startsWith("/")) {
+            prefix = prefix.substring(1);
+        }
+        return prefix.isEmpty() || prefix.endsWith("/") ? prefix : prefix + "/";
+    }
+
+    /**
+     * Lists the regular files found directly in a directory, lazily. The directory is opened when the stream is
+     * consumed, and closed with the stream.
+     *
+     * @param directory the directory
+     * @return the files, empty if the directory does not exist or cannot be read
+     */
+    public static Stream<Path> listFiles(Path directory) {
+        return Stream.of(directory).flatMap(dir -> {
+            if (!Files.isDirectory(dir)) {
+                return Stream.empty();
+            }
+            try {
+                return Files.list(dir).filter(Files::isRegularFile);
+            } catch (IOException | UncheckedIOException e) {
+                return Stream.empty();
+            }
+        });
+    }
+
+    /**
+     * Lists the names of the regular files found in a directory and in its sub-directories, lazily. The directory is
+     * walked when the stream is consumed, and closed with the stream.
+     *
+     * @param directory the directory
+     * @param prefix the prefix of the names, usually the path of the directory in the resource names
+     * @param maxDepth the maximum number of levels of directories to visit
+     * @return the prefixed names of the files, with '/' separators, empty if the directory does not exist
+     */
+    public static Stream<String> walkNames(Path directory, String prefix, int maxDepth) {
+        return Stream.of(directory).flatMap(dir -> {
+            if (!Files.isDirectory(dir)) {
+                return Stream.empty();
+            }
+            try {
+                return Files.walk(dir, maxDepth).filter(Files::isRegularFile).map(file -> {
+                    StringBuilder name = new StringBuilder(prefix);
+                    for (Path element : dir.relativize(file)) {
+                        if (name.length() > prefix.length()) {
+                            name.append('/');
+                        }
+                        name.append(element);
+                    }
+                    return name.toString();
+                });
+            } catch (IOException | UncheckedIOException e) {
+                return Stream.empty();
+            }
+        });
+    }
+
+    /**
+     * Keeps the first resource of each file name, so that the resources of a directory shadow the ones listed after
+     * them. The stream is filtered lazily, and must be consumed sequentially.
+     *
+     * @param resources the resources of a directory, in precedence order
+     * @return the resources, without the shadowed ones
+     */
+    public static Stream<LuteceResource> distinctFileNames(Stream<LuteceResource> resources) {
+        Set<String> seen = new HashSet<>();
+        return resources.sequential().filter(resource -> seen.add(getFileName(resource)));
+    }
+
+    /**
+     * Returns the file name of a resource : the last segment of its URL, decoded, or of its name when it has no URL.
+     *
+     * @param resource the resource
+     * @return the file name
+     */
+    public static String getFileName(LuteceResource resource) {
+        String path = null;
+        try {
+            URL url = resource.getURL();
+            if (url != null) {
+                path = URLDecoder.decode(url.getPath().replace("+", "%2B"), StandardCharsets.UTF_8);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // fall back on the name
+        }
+        if (path == null) {
+            path = resource.getName().replace(File.separatorChar, '/');
+        }
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
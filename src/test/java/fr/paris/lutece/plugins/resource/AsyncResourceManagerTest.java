@@ -0,0 +1,138 @@
+package fr.paris.lutece.plugins.resource;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.AddPackages;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.Test;
+
+import fr.paris.lutece.plugins.resource.loader.ResourceNotFoundException;
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+import jakarta.inject.Inject;
+
+@EnableAutoWeld
+@AddBeanClasses({ DefaultResourceManager.class, AsyncResourceManager.class })
+@AddPackages(fr.paris.lutece.plugins.resource.loader.FileResourceLoader.class)
+@AddExtensions(io.smallrye.config.inject.ConfigExtension.class)
+class AsyncResourceManagerTest {
+
+    @Inject
+    private AsyncResourceManager asyncResourceManager;
+
+    @Test
+    void testGetResourceAsInputStreamAsync() throws Exception {
+        InputStream in = asyncResourceManager.getResourceAsInputStreamAsync("dir/classpath.txt").get(10,
+                TimeUnit.SECONDS);
+        assertEquals("classpath.txt", FileUtils.toString(in, "UTF-8"));
+    }
+
+    @Test
+    void testMissingResource() {
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> asyncResourceManager.getResourceAsync("missing.txt").get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof ResourceNotFoundException);
+    }
+
+    @Test
+    void testStreamOpenedAfterTheDeadlineIsClosed() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+        ResourceManager slowManager = new DefaultResourceManager() {
+            @Override
+            public InputStream getResourceAsInputStream(String name) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new ByteArrayInputStream(new byte[0]) {
+                    @Override
+                    public void close() {
+                        closed.countDown();
+                    }
+                };
+            }
+        };
+        AsyncResourceManager manager = new AsyncResourceManager(slowManager, null);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> manager.getResourceAsInputStreamAsync("slow.txt", Duration.ofMillis(50)).get());
+        assertTrue(e.getCause() instanceof TimeoutException);
+
+        release.countDown();
+        assertTrue(closed.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testLookupIsInterruptedAtTheDeadline() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ResourceManager blockedManager = new DefaultResourceManager() {
+            @Override
+            public LuteceResource getResource(String name) throws ResourceNotFoundException {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                throw new ResourceNotFoundException(name);
+            }
+        };
+        AsyncResourceManager manager = new AsyncResourceManager(blockedManager, null);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> manager.getResourceAsync("blocked.txt", Duration.ofMillis(50)).get());
+        assertTrue(e.getCause() instanceof TimeoutException);
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testRejectedLookup() {
+        AsyncResourceManager manager = new AsyncResourceManager(new DefaultResourceManager(), task -> {
+            throw new RejectedExecutionException("full");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> manager.getResourceAsync("dir/classpath.txt").get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+}
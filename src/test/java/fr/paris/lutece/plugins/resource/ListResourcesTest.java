@@ -0,0 +1,187 @@
+package fr.paris.lutece.plugins.resource;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.AddPackages;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+import fr.paris.lutece.plugins.resource.loader.FileResourceLoader;
+import fr.paris.lutece.plugins.resource.loader.JarResourceLoader;
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+import fr.paris.lutece.plugins.resource.util.ResourceListings;
+import jakarta.inject.Inject;
+
+@EnableAutoWeld
+@AddBeanClasses(DefaultResourceManager.class)
+@AddPackages(fr.paris.lutece.plugins.resource.loader.FileResourceLoader.class)
+@AddExtensions(io.smallrye.config.inject.ConfigExtension.class)
+@TestInstance(Lifecycle.PER_CLASS)
+class ListResourcesTest {
+
+    @Inject
+    private ResourceManager resourceManager;
+
+    private File directory;
+
+    @BeforeAll
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("lutece-resources").toFile();
+        File first = new File(directory, "first");
+        File second = new File(directory, "second");
+        new File(first, "dir/sub").mkdirs();
+        new File(second, "dir").mkdirs();
+        write(new File(first, "dir/file.txt"), "first:dir/file.txt");
+        write(new File(first, "dir/classpath.txt"), "first:dir/classpath.txt");
+        write(new File(first, "dir/sub/deep.txt"), "first:dir/sub/deep.txt");
+        write(new File(second, "dir/file.txt"), "second:dir/file.txt");
+        write(new File(second, "dir/second.txt"), "second:dir/second.txt");
+        resourceManager.addSearchPath(FileResourceLoader.ID, first.getAbsolutePath());
+        resourceManager.addSearchPath(FileResourceLoader.ID, second.getAbsolutePath());
+
+        File jar = new File(directory, "listing.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            for (String entry : new String[] { "dir/file.txt", "dir/jar.txt", "dir/sub/deep.txt" }) {
+                out.putNextEntry(new JarEntry(entry));
+                out.write(("jar:" + entry).getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        resourceManager.addSearchPath(JarResourceLoader.ID, "jar:" + jar.toURI());
+    }
+
+    @AfterAll
+    void tearDown() throws IOException {
+        FileUtils.forceDelete(directory);
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read(LuteceResource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Map<String, String> list(String path) {
+        Map<String, String> contents = new TreeMap<>();
+        try (Stream<LuteceResource> resources = resourceManager.listResources(path)) {
+            resources.forEach(resource -> contents.put(ResourceListings.getFileName(resource), read(resource)));
+        }
+        return contents;
+    }
+
+    @Test
+    void testListingMergesEveryLoader() {
+        Map<String, String> contents = list("/dir");
+        assertEquals(4, contents.size(), contents.toString());
+        // the class path loader comes first, then the file loader with its search paths in order, then the JARs
+        assertEquals("classpath.txt", contents.get("classpath.txt"));
+        assertEquals("first:dir/file.txt", contents.get("file.txt"));
+        assertEquals("second:dir/second.txt", contents.get("second.txt"));
+        assertEquals("jar:dir/jar.txt", contents.get("jar.txt"));
+    }
+
+    @Test
+    void testListingOfASubDirectory() {
+        assertEquals(Map.of("deep.txt", "first:dir/sub/deep.txt"), list("dir/sub/"));
+        assertTrue(list("/missing").isEmpty());
+    }
+
+    @Test
+    void testListingIsLazy() {
+        try (Stream<LuteceResource> resources = resourceManager.listResources("dir")) {
+            assertEquals(1, resources.limit(1).count());
+        }
+    }
+
+    private List<String> findNames(String glob) {
+        try (Stream<String> names = resourceManager.findResourceNames(glob, true)) {
+            return names.filter(name -> !name.endsWith(".class")).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void testFindResourceNames() {
+        assertEquals(List.of("dir/classpath.txt", "dir/file.txt", "dir/jar.txt", "dir/second.txt", "dir/sub/deep.txt"),
+                findNames("dir/**/*.txt"));
+        assertEquals(List.of("dir/classpath.txt", "dir/file.txt", "dir/jar.txt", "dir/second.txt"),
+                findNames("/dir/*.txt"));
+        assertEquals(List.of("dir/sub/deep.txt"), findNames("**/deep.txt"));
+        assertEquals(List.of("dir/sub/deep.txt"), findNames("dir/s*/**"));
+        assertTrue(findNames("missing/**").isEmpty());
+    }
+
+    @Test
+    void testFindResources() {
+        Map<String, String> contents = new TreeMap<>();
+        try (Stream<LuteceResource> resources = resourceManager.findResources("dir/*.txt", true)) {
+            resources.forEach(resource -> contents.put(ResourceListings.getFileName(resource), read(resource)));
+        }
+        assertEquals(4, contents.size());
+        assertEquals("classpath.txt", contents.get("classpath.txt"));
+        assertEquals("first:dir/file.txt", contents.get("file.txt"));
+        assertEquals("jar:dir/jar.txt", contents.get("jar.txt"));
+    }
+
+    @Test
+    void testRoutedGlob() {
+        // only the class path is searched, and the names keep their scheme
+        assertEquals(List.of("classpath:dir/classpath.txt"), findNames("classpath:dir/*.txt"));
+        try (Stream<LuteceResource> resources = resourceManager.findResources("classpath:dir/**")) {
+            assertEquals(List.of("classpath.txt"), resources.map(this::read).collect(Collectors.toList()));
+        }
+    }
+}
@@ -30,17 +30,27 @@ import jakarta.inject.Inject;
 
 import java.io.File;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestInstance.Lifecycle;
 
+import fr.paris.lutece.plugins.resource.cache.CacheStatistics;
 import fr.paris.lutece.plugins.resource.loader.FileResourceLoader;
+import fr.paris.lutece.plugins.resource.loader.ResourceNotFoundException;
 import fr.paris.lutece.plugins.resource.util.FileUtils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.jboss.weld.junit5.auto.AddBeanClasses;
@@ -131,4 +141,134 @@ class ResourceManagerTest {
         assertEquals("classpath.txt", FileUtils.fileRead(c, "UTF-8"));
         assertEquals(ec, c);
     }
+
+    @Test
+    void testDifferentResourcesToTheSameFileAreNotCoalesced() throws Exception {
+        File outDir = new File(FileUtils.getBasedir(), "target/");
+        resourceManager.setOutputDirectory(outDir);
+        DefaultResourceManager manager = (DefaultResourceManager) resourceManager;
+        long coalesced = manager.getCoalescedFileCount();
+
+        for (int round = 0; round < 20; round++) {
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            CompletableFuture<File> file = CompletableFuture.supplyAsync(() -> write(barrier, "dir/file.txt"));
+            CompletableFuture<File> classpath = CompletableFuture
+                    .supplyAsync(() -> write(barrier, "dir/classpath.txt"));
+            assertEquals(file.get(), classpath.get());
+            // both resources were written in turn, the file holds the last one in full
+            String content = FileUtils.fileRead(file.get(), "UTF-8");
+            assertTrue(content.equals("file.txt") || content.equals("classpath.txt"), content);
+        }
+        assertEquals(coalesced, manager.getCoalescedFileCount());
+    }
+
+    private File write(CyclicBarrier barrier, String name) {
+        try {
+            barrier.await();
+            return resourceManager.getResourceAsFile(name, "same.txt");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void testMissingResourceIsFoundAfterAddingASearchPath() throws Exception {
+        Path dir = Files.createTempDirectory("lutece-resources");
+        FileUtils.fileWrite(dir.resolve("added.txt"), "UTF-8", "added.txt");
+        try {
+            assertThrows(ResourceNotFoundException.class, () -> resourceManager.getResource("added.txt"));
+            // the miss is now remembered
+            assertFalse(resourceManager.findResource("added.txt").isPresent());
+
+            resourceManager.addSearchPath(FileResourceLoader.ID, dir.toString());
+            InputStream in = resourceManager.getResourceAsInputStream("added.txt");
+            assertEquals("added.txt", FileUtils.toString(in, "UTF-8"));
+        } finally {
+            FileUtils.forceDelete(dir.toFile());
+        }
+    }
+
+    @Test
+    void testResolutionCache() throws Exception {
+        DefaultResourceManager manager = (DefaultResourceManager) resourceManager;
+        CacheStatistics before = manager.getResolutionCacheStatistics();
+
+        LuteceResource resource = resourceManager.getResource("dir/file.txt");
+        assertSame(resource, resourceManager.getResource("dir/file.txt"));
+        assertSame(resource, resourceManager.getResource("./dir//file.txt"));
+
+        CacheStatistics after = manager.getResolutionCacheStatistics();
+        assertTrue(after.getHitCount() >= before.getHitCount() + 2);
+
+        resourceManager.invalidate("dir/file.txt");
+        assertNotSame(resource, resourceManager.getResource("dir/file.txt"));
+    }
+
+    @Test
+    void testSchemeRouting() throws Exception {
+        File absoluteFile = new File(FileUtils.getBasedir(), "src/test/file-resources/dir/file.txt").getAbsoluteFile();
+        LuteceResource resource = resourceManager.getResource(absoluteFile.toURI().toString());
+        assertEquals(absoluteFile, resource.getFile());
+
+        InputStream in = resourceManager.getResourceAsInputStream("classpath:dir/classpath.txt");
+        assertEquals("classpath.txt", FileUtils.toString(in, "UTF-8"));
+
+        // a routed name is only given to its owning loader
+        assertFalse(resourceManager.findResource("classpath:dir/file.txt").isPresent());
+        assertFalse(resourceManager.findResource("file:dir/classpath.txt").isPresent());
+    }
+
+    @Test
+    void testBatchLookup() throws Exception {
+        ResourceBatchResult result = resourceManager.getResources(
+                Arrays.asList("dir/file.txt", "/dir/classpath.txt", "missing.txt", "classpath:dir/classpath.txt",
+                        "classpath:missing.txt"));
+
+        assertEquals(Arrays.asList("dir/file.txt", "/dir/classpath.txt", "classpath:dir/classpath.txt"),
+                Arrays.asList(result.getResources().keySet().toArray()));
+        assertEquals(Arrays.asList("missing.txt", "classpath:missing.txt"),
+                Arrays.asList(result.getMissingNames().toArray()));
+        assertFalse(result.isComplete());
+        assertEquals("file.txt", FileUtils.toString(result.getResource("dir/file.txt").getInputStream(), "UTF-8"));
+        assertEquals("classpath.txt",
+                FileUtils.toString(result.getResource("classpath:dir/classpath.txt").getInputStream(), "UTF-8"));
+    }
+
+    @Test
+    void testBloomFiltersSkipLoaders() throws Exception {
+        DefaultResourceManager manager = (DefaultResourceManager) resourceManager;
+        long before = manager.getFilteredLookupCount();
+
+        // the JAR loader has no JAR, its filter rules every name out
+        assertFalse(resourceManager.findResource("bloom/missing.txt").isPresent());
+        assertTrue(manager.getFilteredLookupCount() > before);
+        assertEquals("file.txt", FileUtils.toString(resourceManager.getResourceAsInputStream("dir/file.txt"), "UTF-8"));
+    }
+
+    @Test
+    void testSpellingsOfANameAreLookedUpAsRequested() throws Exception {
+        assertEquals("file.txt", FileUtils.toString(resourceManager.getResourceAsInputStream("./dir//file.txt"), "UTF-8"));
+        assertEquals("file.txt", FileUtils.toString(resourceManager.getResourceAsInputStream("dir/./file.txt"), "UTF-8"));
+
+        ResourceBatchResult result = resourceManager.getResources(Arrays.asList("dir//classpath.txt",
+                "./dir/classpath.txt", "dir/missing//file.txt"));
+        assertEquals(Arrays.asList("dir//classpath.txt", "./dir/classpath.txt"),
+                Arrays.asList(result.getResources().keySet().toArray()));
+        assertEquals("classpath.txt",
+                FileUtils.toString(result.getResource("./dir/classpath.txt").getInputStream(), "UTF-8"));
+        assertTrue(result.getMissingNames().contains("dir/missing//file.txt"));
+    }
+
+    @Test
+    void testNormalizeName() {
+        assertEquals("dir/file.txt", DefaultResourceManager.normalizeName("dir/file.txt"));
+        assertEquals("/dir/file.txt", DefaultResourceManager.normalizeName("/dir//./file.txt"));
+        // the leading slashes of a UNC path, the query string and the fragment are kept
+        assertEquals("//server/share/file.txt", DefaultResourceManager.normalizeName("//server//share/./file.txt"));
+        assertEquals("http://host/a?next=b//c/./d", DefaultResourceManager.normalizeName("http://host//a?next=b//c/./d"));
+        assertEquals("dir/file.txt#a//b", DefaultResourceManager.normalizeName("dir//file.txt#a//b"));
+        assertEquals("dir/file.txt", DefaultResourceManager.normalizeName("./dir/file.txt"));
+        assertEquals("http://host/dir/file.txt", DefaultResourceManager.normalizeName("http://host/dir//file.txt"));
+        assertEquals("file:///dir/file.txt", DefaultResourceManager.normalizeName("file:///dir/file.txt"));
+    }
 }
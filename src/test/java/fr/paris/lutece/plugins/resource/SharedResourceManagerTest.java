@@ -0,0 +1,135 @@
+package fr.paris.lutece.plugins.resource;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.jboss.weld.junit5.auto.AddBeanClasses;
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.AddPackages;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+import fr.paris.lutece.plugins.resource.loader.FileResourceLoader;
+import fr.paris.lutece.plugins.resource.loader.ThreadContextClasspathResourceLoader;
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+import jakarta.inject.Inject;
+
+@EnableAutoWeld
+@AddBeanClasses({ DefaultResourceManager.class, SharedResourceManager.class })
+@AddPackages(fr.paris.lutece.plugins.resource.loader.FileResourceLoader.class)
+@AddExtensions(io.smallrye.config.inject.ConfigExtension.class)
+@TestInstance(Lifecycle.PER_CLASS)
+class SharedResourceManagerTest {
+
+    @Inject
+    @Shared
+    private ResourceManager sharedManager;
+
+    @Inject
+    @Shared
+    private ResourceManager otherSharedManager;
+
+    @Inject
+    private ResourceManager dependentManager;
+
+    private File overlayDirectory;
+
+    @BeforeAll
+    void setUp() throws IOException {
+        sharedManager.addSearchPath(FileResourceLoader.ID, FileUtils.getBasedir() + "/src/test/file-resources");
+        overlayDirectory = Files.createTempDirectory("lutece-resources").toFile();
+        Files.writeString(new File(overlayDirectory, "overlay.txt").toPath(), "overlay.txt");
+        new File(overlayDirectory, "dir").mkdirs();
+        Files.writeString(new File(overlayDirectory, "dir/file.txt").toPath(), "overlaid dir/file.txt");
+    }
+
+    @AfterAll
+    void tearDown() throws IOException {
+        FileUtils.forceDelete(overlayDirectory);
+    }
+
+    @Test
+    void testSearchPathsAreSharedByEveryInjectionPoint() throws Exception {
+        assertTrue(otherSharedManager.findResource("dir/file.txt").isPresent());
+        // a dependent manager has its own loaders
+        assertNotSame(dependentManager, sharedManager);
+        assertFalse(dependentManager.findResource("dir/file.txt").isPresent());
+    }
+
+    @Test
+    void testChildManagersOverlayTheirSearchPaths() throws Exception {
+        String parentContent =
+                FileUtils.toString(sharedManager.getResourceAsInputStream("dir/file.txt"), "UTF-8").trim();
+        try (ChildResourceManager child = ((DefaultResourceManager) sharedManager).newChildManager()) {
+            child.addSearchPath(FileResourceLoader.ID, overlayDirectory.getAbsolutePath());
+
+            assertEquals("overlay.txt",
+                    FileUtils.toString(child.getResourceAsInputStream("overlay.txt"), "UTF-8").trim());
+            // the overlay is looked up before the parent
+            assertEquals("overlaid dir/file.txt",
+                    FileUtils.toString(child.getResourceAsInputStream("/dir/file.txt"), "UTF-8").trim());
+            // the other names come from the parent
+            assertEquals("classpath.txt",
+                    FileUtils.toString(child.getResourceAsInputStream("dir/classpath.txt"), "UTF-8").trim());
+
+            // the parent never sees the overlay
+            assertFalse(sharedManager.findResource("overlay.txt").isPresent());
+            assertEquals(parentContent,
+                    FileUtils.toString(sharedManager.getResourceAsInputStream("dir/file.txt"), "UTF-8").trim());
+
+            try (ChildResourceManager grandChild = child.newChildManager()) {
+                assertEquals("overlay.txt",
+                        FileUtils.toString(grandChild.getResourceAsInputStream("overlay.txt"), "UTF-8").trim());
+            }
+        }
+    }
+
+    @Test
+    void testSharedLoadersCannotBeOverlaid() {
+        try (ChildResourceManager child = ((DefaultResourceManager) sharedManager).newChildManager()) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> child.addSearchPath(ThreadContextClasspathResourceLoader.ID, "ignored"));
+            assertThrows(IllegalArgumentException.class, () -> child.addSearchPath("unknown", "ignored"));
+            assertThrows(IllegalArgumentException.class,
+                    () -> child.removeSearchPath(FileResourceLoader.ID, "ignored"));
+        }
+    }
+}
@@ -29,7 +29,9 @@ import java.io.InputStream;
 import fr.paris.lutece.plugins.resource.util.FileUtils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 
@@ -46,9 +48,13 @@ public abstract class AbstractResourceLoaderTest {
         String actualContent = FileUtils.toString(is, "UTF-8");
 
         assertEquals(expectedContent, actualContent);
+
+        assertTrue(resourceLoader.findResource(name).isPresent(), "findResource should find '" + name + "'.");
     }
 
     protected void assertMissingResource(String name) throws Exception {
+        assertFalse(resourceLoader.findResource(name).isPresent(), "findResource should not find '" + name + "'.");
+
         try {
             InputStream is = resourceLoader.getResource(name).getInputStream();
 
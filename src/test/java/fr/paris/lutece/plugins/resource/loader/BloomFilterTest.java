@@ -0,0 +1,191 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
+class BloomFilterTest {
+
+    private File directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("lutece-resources").toFile();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        FileUtils.forceDelete(directory);
+    }
+
+    @Test
+    void testFalsePositiveProbability() {
+        int names = 10000;
+        BloomFilter filter = BloomFilter.create(names, 0.01);
+        for (int i = 0; i < names; i++) {
+            filter.put("templates/admin/plugin" + i + ".html");
+        }
+        for (int i = 0; i < names; i++) {
+            assertTrue(filter.mightContain("templates/admin/plugin" + i + ".html"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < names; i++) {
+            if (filter.mightContain("templates/skin/plugin" + i + ".html")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < names * 0.02, "false positives : " + falsePositives);
+
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(10, 1));
+    }
+
+    @Test
+    void testJarLoaderFilterFollowsTheSearchPaths() throws IOException {
+        File first = JarResourceLoaderTest.createJar(new File(directory, "first.jar"), "dir/first.txt");
+        File second = JarResourceLoaderTest.createJar(new File(directory, "second.jar"), "dir/second.txt");
+        JarResourceLoader loader = new JarResourceLoader();
+        loader.setBloomFilterFpp(0.01);
+        try {
+            assertFalse(loader.mightContain("dir/first.txt"));
+            loader.addSearchPath("jar:" + first.toURI());
+            assertTrue(loader.mightContain("/dir/first.txt"));
+            assertFalse(loader.mightContain("dir/second.txt"));
+
+            loader.addSearchPath("jar:" + second.toURI());
+            assertTrue(loader.mightContain("dir/second.txt"));
+
+            loader.removeSearchPath("jar:" + first.toURI());
+            assertFalse(loader.mightContain("dir/first.txt"));
+            assertTrue(loader.mightContain("dir/second.txt"));
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Test
+    void testJarLoaderFilterFollowsTheFalsePositiveProbability() throws IOException {
+        String[] names = new String[200];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "dir/entry" + i + ".txt";
+        }
+        File jar = JarResourceLoaderTest.createJar(new File(directory, "entries.jar"), names);
+        JarResourceLoader loader = new JarResourceLoader();
+        loader.setBloomFilterFpp(0.001);
+        loader.addSearchPath("jar:" + jar.toURI());
+        try {
+            assertTrue(falsePositives(loader) < 100);
+
+            loader.setBloomFilterFpp(0.5);
+            assertTrue(falsePositives(loader) > 500);
+
+            loader.setBloomFilterFpp(0.001);
+            assertTrue(falsePositives(loader) < 100);
+        } finally {
+            loader.close();
+        }
+    }
+
+    private static int falsePositives(JarResourceLoader loader) {
+        int falsePositives = 0;
+        for (int i = 0; i < 2000; i++) {
+            if (loader.mightContain("dir/missing" + i + ".txt")) {
+                falsePositives++;
+            }
+        }
+        return falsePositives;
+    }
+
+    @Test
+    void testFileLoaderFilterNeedsAnIndex() throws IOException {
+        File first = new File(directory, "first");
+        File second = new File(directory, "second");
+        first.mkdirs();
+        second.mkdirs();
+        Files.write(new File(first, "a.txt").toPath(), "a".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(second, "b.txt").toPath(), "b".getBytes(StandardCharsets.UTF_8));
+
+        FileResourceLoader loader = new FileResourceLoader();
+        loader.setBloomFilterFpp(0.01);
+        loader.addSearchPath(first.getAbsolutePath());
+        try {
+            // without an index every name might be held
+            assertTrue(loader.mightContain("b.txt"));
+
+            loader.enableIndex(0);
+            assertTrue(loader.mightContain("a.txt"));
+            assertFalse(loader.mightContain("b.txt"));
+            // names the index can't answer are let through
+            assertTrue(loader.mightContain("../first/a.txt"));
+            assertTrue(loader.mightContain(new File(second, "b.txt").getAbsolutePath()));
+
+            loader.addSearchPath(second.getAbsolutePath());
+            assertTrue(loader.mightContain("b.txt"));
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Test
+    void testFileLoaderFilterPassesWhileStale() throws IOException, InterruptedException {
+        File first = new File(directory, "first");
+        first.mkdirs();
+        Files.write(new File(first, "a.txt").toPath(), "a".getBytes(StandardCharsets.UTF_8));
+
+        FileResourceLoader loader = new FileResourceLoader();
+        loader.setBloomFilterFpp(0.01);
+        loader.addSearchPath(first.getAbsolutePath());
+        loader.enableIndex(0);
+        try {
+            assertFalse(loader.mightContain("c.txt"));
+
+            Files.write(new File(first, "c.txt").toPath(), "c".getBytes(StandardCharsets.UTF_8));
+            FileSearchPathIndexTest.assertEventually(() -> loader.findResource("c.txt").isPresent());
+            // once the index has changed, names are let through until the filter is built again in the background
+            assertTrue(loader.mightContain("c.txt"));
+            FileSearchPathIndexTest.assertEventually(() -> !loader.mightContain("d.txt"));
+            assertTrue(loader.mightContain("a.txt"));
+            assertTrue(loader.mightContain("c.txt"));
+        } finally {
+            loader.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker circuit = new CircuitBreaker(3, 60000);
+        for (int i = 0; i < 2; i++) {
+            circuit.acquire().onFailure();
+        }
+        circuit.acquire().onSuccess();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(CircuitBreaker.State.CLOSED, circuit.getState());
+            circuit.acquire().onFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuit.getState());
+        assertNull(circuit.acquire());
+        assertNull(circuit.acquire());
+        assertEquals(2, circuit.getRejectedCount());
+    }
+
+    @Test
+    void testHalfOpenLetsASingleTrialThrough() {
+        CircuitBreaker circuit = new CircuitBreaker(1, 0);
+        circuit.acquire().onFailure();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuit.getState());
+
+        CircuitBreaker.Permit trial = circuit.acquire();
+        assertNotNull(trial);
+        assertNull(circuit.acquire());
+        trial.onFailure();
+
+        circuit.acquire().close();
+        circuit.acquire().onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuit.getState());
+        assertNotNull(circuit.acquire());
+        assertNotNull(circuit.acquire());
+        assertEquals(1, circuit.getRejectedCount());
+    }
+
+    @Test
+    void testTrialWhichThrowsEndsItsPermit() {
+        CircuitBreaker circuit = new CircuitBreaker(1, 0);
+        circuit.acquire().onFailure();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuit.getState());
+
+        assertThrows(IllegalStateException.class, () -> {
+            try (CircuitBreaker.Permit trial = circuit.acquire()) {
+                assertNotNull(trial);
+                assertNull(circuit.acquire());
+                throw new IllegalStateException("unexpected");
+            }
+        });
+        // the trial was ended without an outcome, another one is let through
+        CircuitBreaker.Permit trial = circuit.acquire();
+        assertNotNull(trial);
+        trial.onSuccess();
+        trial.close();
+        assertEquals(CircuitBreaker.State.CLOSED, circuit.getState());
+    }
+
+    @Test
+    void testOnlyTheTrialEndsTheTrial() {
+        CircuitBreaker circuit = new CircuitBreaker(1, 0);
+        CircuitBreaker.Permit slow = circuit.acquire();
+        CircuitBreaker.Permit other = circuit.acquire();
+        circuit.acquire().onFailure();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuit.getState());
+
+        CircuitBreaker.Permit trial = circuit.acquire();
+        assertNotNull(trial);
+        // the calls permitted while the circuit was closed end while the trial is still running
+        slow.close();
+        other.onFailure();
+        assertNull(circuit.acquire());
+
+        trial.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuit.getState());
+    }
+}
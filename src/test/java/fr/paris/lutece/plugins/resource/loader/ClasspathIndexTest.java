@@ -0,0 +1,237 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
+class ClasspathIndexTest {
+
+    private File directory;
+
+    private URLClassLoader parent;
+
+    private URLClassLoader child;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("lutece-resources").toFile();
+        File parentJar = JarResourceLoaderTest.createJar(new File(directory, "parent.jar"), "dir/shadowed.txt",
+                "dir/parent.txt");
+        File classes = new File(directory, "classes");
+        File file = new File(classes, "dir/with space.txt");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), "classes:dir/with space.txt".getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(classes, "dir/shadowed.txt").toPath(), "classes".getBytes(StandardCharsets.UTF_8));
+        File childJar = JarResourceLoaderTest.createJar(new File(directory, "child.jar"), "dir/shadowed.txt",
+                "dir/child.txt");
+        parent = new URLClassLoader(new URL[] { parentJar.toURI().toURL() }, ClassLoader.getPlatformClassLoader());
+        child = new URLClassLoader(new URL[] { classes.toURI().toURL(), childJar.toURI().toURL() }, parent);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        child.close();
+        parent.close();
+        FileUtils.forceDelete(directory);
+    }
+
+    @Test
+    void testIndexMatchesTheClassLoader() throws Exception {
+        ClasspathIndex index = ClasspathIndex.forClassLoader(child).orElseThrow();
+        assertEquals(3, index.getRootCount());
+        assertEquals(4, index.size());
+        for (String name : new String[] { "dir/shadowed.txt", "dir/parent.txt", "dir/child.txt",
+                "dir/with space.txt" }) {
+            URL url = index.find(name);
+            assertNotNull(url, name);
+            assertEquals(child.getResource(name).toExternalForm(), url.toExternalForm());
+        }
+        assertEquals("parent.jar:dir/shadowed.txt",
+                FileUtils.toString(index.find("dir/shadowed.txt").openStream(), "UTF-8"));
+        assertEquals("classes:dir/with space.txt",
+                FileUtils.toString(index.find("dir/with space.txt").openStream(), "UTF-8"));
+        assertNull(index.find("dir/missing.txt"));
+    }
+
+    @Test
+    void testManifestClassPath() throws Exception {
+        File library = JarResourceLoaderTest.createJar(new File(directory, "library.jar"), "dir/library.txt");
+        File main = new File(directory, "main.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, library.getName());
+        new JarOutputStream(new FileOutputStream(main), manifest).close();
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] { main.toURI().toURL() },
+                ClassLoader.getPlatformClassLoader())) {
+            ClasspathIndex index = ClasspathIndex.forClassLoader(loader).orElseThrow();
+            assertEquals(2, index.getRootCount());
+            assertEquals("library.jar:dir/library.txt",
+                    FileUtils.toString(index.find("dir/library.txt").openStream(), "UTF-8"));
+        }
+    }
+
+    @Test
+    void testIndexIsCachedPerClassLoader() {
+        ClasspathIndex index = ClasspathIndex.forClassLoader(child).orElseThrow();
+        assertSame(index, ClasspathIndex.forClassLoader(child).orElseThrow());
+        assertNotSame(index, ClasspathIndex.forClassLoader(parent).orElseThrow());
+
+        ClasspathIndex.invalidate(child);
+        assertNotSame(index, ClasspathIndex.forClassLoader(child).orElseThrow());
+    }
+
+    @Test
+    void testClassLoaderThatCannotBeEnumerated() {
+        ClassLoader opaque = new ClassLoader(child) {
+        };
+        assertFalse(ClasspathIndex.forClassLoader(opaque).isPresent());
+    }
+
+    @Test
+    void testChildFirstClassLoader() throws Exception {
+        File classes = new File(directory, "classes");
+        try (URLClassLoader childFirst = new ChildFirstClassLoader(new URL[] { classes.toURI().toURL() }, parent)) {
+            ClasspathIndex index = ClasspathIndex.forClassLoader(childFirst).orElseThrow();
+            assertEquals("classes", FileUtils.toString(index.find("dir/shadowed.txt").openStream(), "UTF-8"));
+            assertEquals("parent.jar:dir/parent.txt",
+                    FileUtils.toString(index.find("dir/parent.txt").openStream(), "UTF-8"));
+        }
+    }
+
+    @Test
+    void testFilesAddedToADirectoryAreFound() throws Exception {
+        ClasspathIndex index = ClasspathIndex.forClassLoader(child).orElseThrow();
+        assertNull(index.find("dir/added.txt"));
+
+        Files.write(new File(directory, "classes/dir/added.txt").toPath(), "added".getBytes(StandardCharsets.UTF_8));
+        URL url = index.find("dir/added.txt");
+        assertNotNull(url);
+        assertEquals(child.getResource("dir/added.txt").toExternalForm(), url.toExternalForm());
+        assertEquals("added", FileUtils.toString(url.openStream(), "UTF-8"));
+        assertNull(index.find("../parent.jar"));
+    }
+
+    @Test
+    void testIndexIsBuiltOutsideOfTheLock() throws Exception {
+        CountDownLatch listing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        URLClassLoader slow = new URLClassLoader(new URL[0], parent) {
+            @Override
+            public URL[] getURLs() {
+                listing.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getURLs();
+            }
+        };
+        CompletableFuture<Optional<ClasspathIndex>> slowIndex = CompletableFuture
+                .supplyAsync(() -> ClasspathIndex.forClassLoader(slow));
+        try {
+            assertTrue(listing.await(10, TimeUnit.SECONDS));
+            // the index of another class loader is built while the slow one is still listing its URLs
+            assertTrue(ClasspathIndex.forClassLoader(child).isPresent());
+            assertFalse(slowIndex.isDone());
+        } finally {
+            release.countDown();
+        }
+        assertTrue(slowIndex.get(10, TimeUnit.SECONDS).isPresent());
+        slow.close();
+    }
+
+    @Test
+    void testIndexedResourceLoader() throws Exception {
+        ThreadContextClasspathResourceLoader loader = new ThreadContextClasspathResourceLoader();
+        loader.setIndexed(true);
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(child);
+        try {
+            LuteceResource resource = loader.getResource("/dir/child.txt");
+            assertEquals(child.getResource("dir/child.txt"), resource.getURL());
+            assertEquals("child.jar:dir/child.txt", FileUtils.toString(resource.getURL().openStream(), "UTF-8"));
+            assertFalse(loader.findResource("dir/missing.txt").isPresent());
+            // directories are found as in the non indexed mode
+            assertEquals(child.getResource("dir/"), loader.getResource("dir/").getURL());
+            assertEquals(child.getResource("dir"), ClasspathIndex.forClassLoader(child).orElseThrow().find("dir"));
+            // the JDK resources are still found
+            assertTrue(loader.findResource("java/lang/Object.class").isPresent());
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    /**
+     * A class loader searching its own URLs first, telling it the way the Tomcat web application class loader does.
+     */
+    public static class ChildFirstClassLoader extends URLClassLoader {
+        ChildFirstClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        public boolean getDelegate() {
+            return false;
+        }
+
+        @Override
+        public URL getResource(String name) {
+            URL url = findResource(name);
+            return url != null ? url : super.getResource(name);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
+/**
+ * Reads the loaders from many threads while search paths are added, and checks that every search path added before a
+ * lookup started is visible to it, and that no lookup fails.
+ */
+class ConcurrentLoaderStressTest {
+
+    private static final int SEARCH_PATHS = 40;
+
+    private static final int READERS = 8;
+
+    private File directory;
+
+    private ExecutorService executor;
+
+    private final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("lutece-resources").toFile();
+        executor = Executors.newFixedThreadPool(READERS + 1);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        FileUtils.forceDelete(directory);
+    }
+
+    /**
+     * Runs the readers until the writer is done, then reports the first failure.
+     */
+    private void run(Runnable writer, ReaderTask reader) throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    start.await();
+                    while (!done.get()) {
+                        reader.read();
+                    }
+                    // one last pass on the final state
+                    reader.read();
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+                return null;
+            }));
+        }
+        futures.add(executor.submit(() -> {
+            try {
+                start.await();
+                writer.run();
+            } catch (Throwable t) {
+                failures.add(t);
+            } finally {
+                done.set(true);
+            }
+            return null;
+        }));
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        if (!failures.isEmpty()) {
+            Throwable failure = failures.peek();
+            throw new AssertionError(failures.size() + " failures, first : " + failure, failure);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ReaderTask {
+        void read() throws Exception;
+    }
+
+    @Test
+    void testJarLookupsDuringAddSearchPath() throws Exception {
+        List<String> jarUrls = new ArrayList<>();
+        for (int i = 0; i < SEARCH_PATHS; i++) {
+            File jar = JarResourceLoaderTest.createJar(new File(directory, "jar" + i + ".jar"), "jar" + i + "/entry.txt",
+                    "shared.txt");
+            jarUrls.add("jar:" + jar.toURI() + "!/");
+        }
+        JarResourceLoader loader = new JarResourceLoader();
+        AtomicInteger added = new AtomicInteger();
+
+        run(() -> {
+            for (String jarUrl : jarUrls) {
+                loader.addSearchPath(jarUrl);
+                added.incrementAndGet();
+            }
+        }, () -> {
+            int visible = added.get();
+            for (int i = 0; i < visible; i++) {
+                String name = "jar" + i + "/entry.txt";
+                LuteceResource resource = loader.findResource(name)
+                        .orElseThrow(() -> new AssertionError("lost " + name));
+                try (InputStream in = resource.getInputStream()) {
+                    assertEquals("jar" + i + ".jar:" + name, FileUtils.toString(in, "UTF-8"));
+                }
+            }
+            if (visible > 0) {
+                // the last JAR added wins, so the shared entry comes from a JAR added at least as late
+                String shared;
+                try (InputStream in = loader.findResource("shared.txt").get().getInputStream()) {
+                    shared = FileUtils.toString(in, "UTF-8");
+                }
+                int jar = Integer.parseInt(shared.substring(3, shared.indexOf('.')));
+                assertTrue(jar >= visible - 1, shared + " while " + visible + " JARs are added");
+
+                Map<String, LuteceResource> batch = loader
+                        .findResources(List.of("/jar0/entry.txt", "jar" + (visible - 1) + "/entry.txt"));
+                assertEquals(2, batch.size());
+            }
+        });
+
+        assertEquals(SEARCH_PATHS, loader.paths.size());
+        loader.close();
+    }
+
+    @Test
+    void testJarLookupsDuringReloads() throws Exception {
+        File v1 = JarResourceLoaderTest.createJar(new File(directory, "v1.jar"), "a.txt", "v1.txt");
+        File v2 = JarResourceLoaderTest.createJar(new File(directory, "v2.jar"), "a.txt", "v2.txt");
+        File deployed = new File(directory, "plugin.jar");
+        Files.copy(v1.toPath(), deployed.toPath());
+        String jarUrl = "jar:" + deployed.toURI() + "!/";
+        JarResourceLoader loader = new JarResourceLoader();
+        loader.addSearchPath(jarUrl);
+
+        run(() -> {
+            try {
+                for (int i = 0; i < SEARCH_PATHS; i++) {
+                    File copy = new File(directory, "copy.tmp");
+                    Files.copy((i % 2 == 0 ? v2 : v1).toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(copy.toPath(), deployed.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    loader.reloadSearchPath(jarUrl);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, () -> {
+            String content;
+            try (InputStream in = loader.findResource("a.txt").get().getInputStream()) {
+                content = FileUtils.toString(in, "UTF-8");
+            }
+            assertTrue(content.equals("v1.jar:a.txt") || content.equals("v2.jar:a.txt"), content);
+            // never both versions at once
+            boolean oneVersion = loader.findResources(List.of("v1.txt", "v2.txt")).size() == 1;
+            assertTrue(oneVersion, "exactly one version is visible");
+        });
+
+        try (InputStream in = loader.findResource("a.txt").get().getInputStream()) {
+            assertEquals("v1.jar:a.txt", FileUtils.toString(in, "UTF-8"));
+        }
+        assertEquals(0, loader.getRetiringJarCount());
+        loader.close();
+    }
+
+    @Test
+    void testFileLookupsDuringAddSearchPath() throws Exception {
+        List<String> roots = new ArrayList<>();
+        for (int i = 0; i < SEARCH_PATHS; i++) {
+            File root = new File(directory, "root" + i);
+            assertTrue(root.mkdirs());
+            Files.writeString(new File(root, "file" + i + ".txt").toPath(), "file" + i);
+            roots.add(root.getAbsolutePath());
+        }
+        FileResourceLoader loader = new FileResourceLoader();
+        AtomicInteger added = new AtomicInteger();
+
+        run(() -> {
+            for (String root : roots) {
+                loader.addSearchPath(root);
+                // adding the same search path again is a no-op
+                loader.addSearchPath(root);
+                added.incrementAndGet();
+            }
+        }, () -> {
+            int visible = added.get();
+            for (int i = 0; i < visible; i++) {
+                String name = "file" + i + ".txt";
+                LuteceResource resource = loader.findResource(name)
+                        .orElseThrow(() -> new AssertionError("lost " + name));
+                assertEquals("file" + i, FileUtils.toString(resource.getInputStream(), "UTF-8"));
+            }
+        });
+
+        assertEquals(SEARCH_PATHS, new HashSet<>(loader.paths).size());
+        assertEquals(SEARCH_PATHS, loader.paths.size());
+    }
+
+    @Test
+    void testConcurrentAddSearchPathKeepsEachPathOnce() throws Exception {
+        ThreadContextClasspathResourceLoader loader = new ThreadContextClasspathResourceLoader();
+        run(() -> {
+        }, () -> {
+            for (int i = 0; i < SEARCH_PATHS; i++) {
+                loader.addSearchPath("path" + i);
+            }
+            for (String path : loader.paths) {
+                if (path == null) {
+                    fail("half-published search path");
+                }
+            }
+        });
+
+        assertEquals(SEARCH_PATHS, loader.paths.size());
+    }
+}
@@ -0,0 +1,139 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
+class FileSearchPathIndexTest {
+
+    @Test
+    void testIndexFollowsFileSystemEvents() throws Exception {
+        Path dir = Files.createTempDirectory("lutece-resources");
+        FileUtils.fileWrite(dir.resolve("a.txt"), "UTF-8", "a");
+        try (FileSearchPathIndex index = new FileSearchPathIndex(0)) {
+            String path = dir.toString();
+            index.addSearchPath(path);
+            assertTrue(index.contains(path, "a.txt"));
+            assertFalse(index.contains(path, "sub/b.txt"));
+
+            Files.createDirectories(dir.resolve("sub"));
+            FileUtils.fileWrite(dir.resolve("sub/b.txt"), "UTF-8", "b");
+            assertEventually(() -> index.contains(path, "sub/b.txt"));
+
+            Files.delete(dir.resolve("a.txt"));
+            assertEventually(() -> !index.contains(path, "a.txt"));
+        } finally {
+            FileUtils.forceDelete(dir.toFile());
+        }
+    }
+
+    @Test
+    void testRescan() throws Exception {
+        Path dir = Files.createTempDirectory("lutece-resources");
+        try (FileSearchPathIndex index = new FileSearchPathIndex(0)) {
+            String path = dir.toString();
+            index.addSearchPath(path);
+            FileUtils.fileWrite(dir.resolve("a.txt"), "UTF-8", "a");
+            index.rescan();
+            assertTrue(index.contains(path, "a.txt"));
+        } finally {
+            FileUtils.forceDelete(dir.toFile());
+        }
+    }
+
+    @Test
+    void testSymbolicLinksAreFollowed() throws Exception {
+        Path dir = Files.createTempDirectory("lutece-resources");
+        Path root = Files.createDirectories(dir.resolve("root"));
+        Path target = Files.createDirectories(dir.resolve("target/sub"));
+        FileUtils.fileWrite(target.resolve("b.txt"), "UTF-8", "b");
+        FileUtils.fileWrite(dir.resolve("target/a.txt"), "UTF-8", "a");
+        Files.createSymbolicLink(root.resolve("link.txt"), dir.resolve("target/a.txt"));
+        Files.createSymbolicLink(root.resolve("linked"), target);
+        // a link to a parent directory is not walked again
+        Files.createSymbolicLink(target.resolve("loop"), target);
+        try (FileSearchPathIndex index = new FileSearchPathIndex(0)) {
+            String path = root.toString();
+            index.addSearchPath(path);
+            assertTrue(index.contains(path, "link.txt"));
+            assertTrue(index.contains(path, "linked/b.txt"));
+            assertFalse(index.contains(path, "linked/loop/b.txt"));
+
+            Files.createSymbolicLink(root.resolve("later.txt"), dir.resolve("target/a.txt"));
+            assertEventually(() -> index.contains(path, "later.txt"));
+        } finally {
+            Files.delete(target.resolve("loop"));
+            FileUtils.forceDelete(dir.toFile());
+        }
+    }
+
+    @Test
+    void testIndexedFileResourceLoader() throws Exception {
+        FileResourceLoader loader = new FileResourceLoader();
+        loader.addSearchPath(FileUtils.getBasedir() + "/src/test/file-resources");
+        loader.enableIndex(0);
+        try {
+            assertEquals("file.txt", FileUtils.toString(loader.getResource("/dir/file.txt").getInputStream(), "UTF-8"));
+            assertTrue(loader.findResource("dir/file.txt").isPresent());
+            assertFalse(loader.findResource("dir/missing.txt").isPresent());
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Test
+    void testToIndexName() {
+        assertEquals("dir/file.txt", FileSearchPathIndex.toIndexName("/dir/file.txt"));
+        assertNull(FileSearchPathIndex.toIndexName("../file.txt"));
+        assertNull(FileSearchPathIndex.toIndexName("dir//file.txt"));
+    }
+
+    /**
+     * Polls the condition until it holds, failing after ten seconds.
+     * @param condition the condition
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static void assertEventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
+class HttpResourceFetcherTest {
+
+    private File directory;
+
+    private Server server;
+
+    private HttpResourceFetcher fetcher;
+
+    @BeforeEach
+    void start() throws IOException {
+        directory = Files.createTempDirectory("lutece-resources").toFile();
+        server = new Server();
+        fetcher = new HttpResourceFetcher(Duration.ofSeconds(5), Duration.ofSeconds(5), true,
+                directory.toPath().resolve("http-cache"));
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        fetcher.close();
+        server.stop();
+        FileUtils.forceDelete(directory);
+    }
+
+    @Test
+    void testUnchangedResourceIsRevalidated() throws IOException {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+
+        assertEquals("body {}", FileUtils.toString(fetcher.fetch(uri).get().openStream(), "UTF-8"));
+        assertEquals("body {}", FileUtils.toString(fetcher.fetch(uri).get().openStream(), "UTF-8"));
+        assertEquals("body {}", FileUtils.toString(fetcher.fetch(uri).get().openStream(), "UTF-8"));
+
+        assertEquals(1, server.downloads.get());
+        assertEquals(2, server.notModified.get());
+        assertEquals(1, fetcher.getDownloadCount());
+        assertEquals(2, fetcher.getRevalidationCount());
+    }
+
+    @Test
+    void testChangedResourceIsDownloaded() throws IOException {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+        HttpResourceFetcher.Entry first = fetcher.fetch(uri).get();
+
+        server.put("/skin.css", "body { margin: 0 }");
+        HttpResourceFetcher.Entry second = fetcher.fetch(uri).get();
+
+        assertEquals("body { margin: 0 }", FileUtils.toString(second.openStream(), "UTF-8"));
+        assertFalse(first.getETag().equals(second.getETag()));
+        assertEquals(2, server.downloads.get());
+    }
+
+    @Test
+    void testCacheSurvivesTheFetcher() throws IOException {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+        fetcher.fetch(uri);
+
+        HttpResourceFetcher other = new HttpResourceFetcher(Duration.ofSeconds(5), Duration.ofSeconds(5), false,
+                directory.toPath().resolve("http-cache"));
+        assertEquals("body {}", FileUtils.toString(other.fetch(uri).get().openStream(), "UTF-8"));
+        assertEquals(1, server.downloads.get());
+        assertEquals(1, other.getRevalidationCount());
+    }
+
+    @Test
+    void testMissingResource() throws IOException {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+        fetcher.fetch(uri);
+
+        server.remove("/skin.css");
+        assertFalse(fetcher.fetch(uri).isPresent());
+        assertFalse(fetcher.fetch(server.uri("missing.css")).isPresent());
+    }
+
+    @Test
+    void testServerError() {
+        assertThrows(IOException.class, () -> fetcher.fetch(server.uri("error")));
+        assertEquals(0, fetcher.getDownloadCount());
+    }
+
+    @Test
+    void testProbeDoesNotDownload() throws IOException {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+
+        assertFalse(fetcher.probe(uri).get().getEntry().isPresent());
+        assertEquals(0, server.downloads.get());
+        assertFalse(fetcher.probe(server.uri("missing.css")).isPresent());
+
+        // once cached, a probe confirming the validators hands out the cached body
+        fetcher.fetch(uri);
+        assertEquals("body {}", FileUtils.toString(fetcher.probe(uri).get().getEntry().get().openStream(), "UTF-8"));
+        server.put("/skin.css", "body { margin: 0 }");
+        assertFalse(fetcher.probe(uri).get().getEntry().isPresent());
+
+        assertEquals(1, server.downloads.get());
+        assertEquals(3, server.probes.get());
+        assertEquals(4, fetcher.getProbeCount());
+    }
+
+    @Test
+    void testRefreshAheadServesTheCachedCopy() throws IOException {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+        fetcher.enableRefreshAhead(Duration.ofHours(1), Duration.ofHours(2), 1, 1);
+        fetcher.fetch(uri);
+
+        assertEquals("body {}", FileUtils.toString(fetcher.get(uri).get().openStream(), "UTF-8"));
+        assertEquals("body {}", FileUtils.toString(fetcher.probe(uri).get().getEntry().get().openStream(), "UTF-8"));
+        assertEquals(1, server.requests.get());
+    }
+
+    @Test
+    void testSoftTtlRefreshesInTheBackground() throws Exception {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+        fetcher.enableRefreshAhead(Duration.ZERO, Duration.ofHours(1), 1, 1);
+        fetcher.fetch(uri);
+
+        server.put("/skin.css", "body { margin: 0 }");
+        assertEquals("body {}", FileUtils.toString(fetcher.get(uri).get().openStream(), "UTF-8"));
+        for (int i = 0; i < 500 && fetcher.getRefreshCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, fetcher.getRefreshCount());
+        assertEquals("body { margin: 0 }", FileUtils.toString(fetcher.get(uri).get().openStream(), "UTF-8"));
+    }
+
+    @Test
+    void testHardTtlRevalidatesBeforeServing() throws IOException {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+        fetcher.enableRefreshAhead(Duration.ZERO, Duration.ZERO, 1, 1);
+        fetcher.fetch(uri);
+
+        server.put("/skin.css", "body { margin: 0 }");
+        assertEquals("body { margin: 0 }", FileUtils.toString(fetcher.get(uri).get().openStream(), "UTF-8"));
+        assertEquals(0, fetcher.getRefreshCount());
+    }
+
+    @Test
+    void testServeStaleOnError() throws IOException {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+        fetcher.fetch(uri);
+
+        server.failing = true;
+        assertEquals("body {}", FileUtils.toString(fetcher.get(uri).get().openStream(), "UTF-8"));
+        assertEquals("body {}", FileUtils.toString(fetcher.probe(uri).get().getEntry().get().openStream(), "UTF-8"));
+        assertEquals(2, fetcher.getStaleServedCount());
+        assertThrows(IOException.class, () -> fetcher.get(server.uri("other.css")));
+
+        fetcher.setServeStaleOnError(false);
+        assertThrows(IOException.class, () -> fetcher.get(uri));
+    }
+
+    @Test
+    void testBulkheadRejectsRequestsToABusyHost() throws Exception {
+        server.put("/skin.css", "body {}");
+        fetcher.setMaxConcurrentRequestsPerHost(1);
+        Thread slow = new Thread(() -> {
+            try {
+                fetcher.fetch(server.uri("slow"));
+            } catch (IOException e) {
+                // not expected, the assertions below fail if the slow request did not hold the permit
+            }
+        });
+        slow.start();
+        assertTrue(server.slowEntered.await(5, TimeUnit.SECONDS));
+
+        assertThrows(HttpResourceFetcher.HostBusyException.class, () -> fetcher.fetch(server.uri("skin.css")));
+        assertEquals(1, fetcher.getBulkheadRejectionCount());
+
+        server.slowReleased.countDown();
+        slow.join(5000);
+        assertEquals("body {}", FileUtils.toString(fetcher.fetch(server.uri("skin.css")).get().openStream(), "UTF-8"));
+    }
+
+    @Test
+    void testCacheIsBoundedInSize() throws Exception {
+        fetcher.setMaxCacheSize(400);
+        for (int i = 0; i < 4; i++) {
+            server.put("/" + i + ".css", "x".repeat(100));
+            fetcher.fetch(server.uri(i + ".css"));
+            Thread.sleep(20);
+        }
+        assertTrue(fetcher.getEvictionCount() > 0);
+        assertTrue(fetcher.getCacheSize() <= 400);
+
+        // the entry validated the longest ago was evicted, it is downloaded again
+        fetcher.fetch(server.uri("0.css"));
+        assertEquals(5, server.downloads.get());
+    }
+
+    @Test
+    void testCacheIsBoundedInAge() throws Exception {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+        fetcher.setMaxCacheAge(Duration.ofMillis(1));
+        fetcher.fetch(uri);
+        Thread.sleep(20);
+
+        assertEquals("body {}", FileUtils.toString(fetcher.fetch(uri).get().openStream(), "UTF-8"));
+        assertEquals(2, server.downloads.get());
+        assertEquals(1, fetcher.getEvictionCount());
+    }
+
+    @Test
+    void testEvictedEntryIsFetchedAgain() throws IOException {
+        server.put("/skin.css", "body {}");
+        URI uri = server.uri("skin.css");
+        HttpResourceFetcher.Entry confirmed = fetcher.fetch(uri).get();
+        HttpLuteceResource resource = new HttpLuteceResource(uri.toURL(), uri, fetcher, confirmed);
+
+        // another download evicts the entry before the stream is opened
+        try (Stream<Path> entries = Files.list(fetcher.getCacheDirectory())) {
+            for (Path entry : (Iterable<Path>) entries::iterator) {
+                Files.delete(entry);
+            }
+        }
+        assertEquals("body {}", FileUtils.toString(resource.getInputStream(), "UTF-8"));
+        assertEquals(2, server.downloads.get());
+    }
+
+    @Test
+    void testTemporaryCacheDirectoryIsPrivate() throws IOException {
+        Path temporary = HttpResourceFetcher.createTemporaryCacheDirectory();
+        Path other = HttpResourceFetcher.createTemporaryCacheDirectory();
+        try {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                assertEquals(PosixFilePermissions.fromString("rwx------"), Files.getPosixFilePermissions(temporary));
+            }
+            assertFalse(temporary.equals(other));
+        } finally {
+            FileUtils.forceDelete(temporary.toFile());
+            FileUtils.forceDelete(other.toFile());
+        }
+    }
+
+    /**
+     * A local HTTP server answering with ETag validators, and counting the bodies it sent and the probes it answered.
+     */
+    static class Server {
+        final AtomicInteger downloads = new AtomicInteger();
+        final AtomicInteger notModified = new AtomicInteger();
+        final AtomicInteger probes = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        volatile boolean failing;
+        final CountDownLatch slowEntered = new CountDownLatch(1);
+        final CountDownLatch slowReleased = new CountDownLatch(1);
+        private final Map<String, String> bodies = new ConcurrentHashMap<>();
+        private final HttpServer httpServer;
+
+        Server() throws IOException {
+            httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            httpServer.createContext("/", this::handle);
+            httpServer.start();
+        }
+
+        void put(String path, String body) {
+            bodies.put(path, body);
+        }
+
+        void remove(String path) {
+            bodies.remove(path);
+        }
+
+        URI uri(String name) {
+            return URI.create(root() + name);
+        }
+
+        String root() {
+            return "http://localhost:" + httpServer.getAddress().getPort() + "/";
+        }
+
+        void stop() {
+            slowReleased.countDown();
+            httpServer.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+            String body = bodies.get(path);
+            if ("/slow".equals(path)) {
+                slowEntered.countDown();
+                try {
+                    slowReleased.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failing || "/error".equals(path)) {
+                exchange.sendResponseHeaders(503, -1);
+            } else if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+                exchange.getResponseHeaders().set("ETag", etag);
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                } else if ("HEAD".equals(exchange.getRequestMethod())) {
+                    probes.incrementAndGet();
+                    exchange.sendResponseHeaders(200, -1);
+                } else {
+                    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                    downloads.incrementAndGet();
+                    exchange.sendResponseHeaders(200, bytes.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(bytes);
+                    }
+                }
+            }
+            exchange.close();
+        }
+    }
+}
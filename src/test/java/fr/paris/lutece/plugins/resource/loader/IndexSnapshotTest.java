@@ -0,0 +1,128 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
+class IndexSnapshotTest {
+
+    private File directory;
+
+    private File jar;
+
+    private String jarUrl;
+
+    private Path snapshotFile;
+
+    @BeforeEach
+    void createJar() throws IOException {
+        directory = Files.createTempDirectory("lutece-resources").toFile();
+        jar = JarResourceLoaderTest.createJar(new File(directory, "snapshot.jar"), "dir/a.txt", "dir/b.txt");
+        jarUrl = "jar:" + jar.toURI() + "!/";
+        snapshotFile = new File(directory, "resource-index.snapshot").toPath();
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        FileUtils.forceDelete(directory);
+    }
+
+    private IndexSnapshot recordSnapshot() throws IOException {
+        IndexSnapshot snapshot = IndexSnapshot.empty();
+        JarResourceLoader loader = new JarResourceLoader();
+        loader.setIndexSnapshot(snapshot);
+        loader.addSearchPath(jarUrl);
+        assertTrue(snapshot.isModified());
+        snapshot.write(snapshotFile);
+        assertFalse(snapshot.isModified());
+        loader.close();
+        return snapshot;
+    }
+
+    @Test
+    void testUnchangedJarsAreRestored() throws Exception {
+        recordSnapshot();
+
+        IndexSnapshot snapshot = IndexSnapshot.read(snapshotFile);
+        assertEquals(1, snapshot.size());
+        JarResourceLoader loader = new JarResourceLoader();
+        loader.setIndexSnapshot(snapshot);
+        loader.addSearchPath(jarUrl);
+
+        assertEquals(1, snapshot.getRestoredCount());
+        assertFalse(snapshot.isModified());
+        assertEquals("snapshot.jar:dir/b.txt",
+                FileUtils.toString(loader.getResource("dir/b.txt").getInputStream(), "UTF-8"));
+        assertFalse(loader.findResource("dir/c.txt").isPresent());
+    }
+
+    @Test
+    void testChangedJarsAreIndexedAgain() throws Exception {
+        recordSnapshot();
+        JarResourceLoaderTest.createJar(jar, "dir/a.txt", "dir/c.txt");
+        Files.setLastModifiedTime(jar.toPath(), FileTime.fromMillis(System.currentTimeMillis() + 10000));
+
+        IndexSnapshot snapshot = IndexSnapshot.read(snapshotFile);
+        assertNull(snapshot.restore(JarResourceLoader.ID, jarUrl, 0));
+
+        JarResourceLoader loader = new JarResourceLoader();
+        loader.setIndexSnapshot(snapshot);
+        loader.addSearchPath(jarUrl);
+        assertEquals(0, snapshot.getRestoredCount());
+        assertTrue(snapshot.isModified());
+        assertEquals("snapshot.jar:dir/c.txt",
+                FileUtils.toString(loader.getResource("dir/c.txt").getInputStream(), "UTF-8"));
+        assertFalse(loader.findResource("dir/b.txt").isPresent());
+    }
+
+    @Test
+    void testCorruptedSnapshotsAreIgnored() throws IOException {
+        recordSnapshot();
+        byte[] bytes = Files.readAllBytes(snapshotFile);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(snapshotFile, bytes);
+
+        assertEquals(0, IndexSnapshot.read(snapshotFile).size());
+        assertEquals(0, IndexSnapshot.read(new File(directory, "missing").toPath()).size());
+    }
+}
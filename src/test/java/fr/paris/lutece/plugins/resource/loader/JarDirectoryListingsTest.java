@@ -0,0 +1,130 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
+class JarDirectoryListingsTest {
+
+    private File directory;
+
+    private File jar;
+
+    private JarDirectoryListings listings;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("lutece-resources").toFile();
+        jar = JarResourceLoaderTest.createJar(new File(directory, "templates.jar"), "root.txt", "templates/",
+                "templates/a.html", "templates/b.html", "templates/sub/c.html");
+        listings = new JarDirectoryListings(4);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        FileUtils.forceDelete(directory);
+    }
+
+    @Test
+    void testListDirectory() throws Exception {
+        assertEquals(Set.of("templates/a.html", "templates/b.html"), names(listings.list(url("templates/"))));
+        assertEquals(Set.of("templates/a.html", "templates/b.html"), names(listings.list(url("templates"))));
+        assertEquals(Set.of("templates/sub/c.html"), names(listings.list(url("templates/sub/"))));
+        assertEquals(Set.of("root.txt"), names(listings.list(url(""))));
+        assertTrue(listings.list(url("missing/")).isEmpty());
+    }
+
+    @Test
+    void testListedURLsAreReadable() throws Exception {
+        for (URL url : listings.list(url("templates/"))) {
+            try (InputStream in = url.openStream()) {
+                String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                assertTrue(url.toExternalForm().endsWith(content.substring("templates.jar:".length())));
+            }
+        }
+    }
+
+    @Test
+    void testChangedJarIsListedAgain() throws Exception {
+        assertEquals(2, listings.list(url("templates/")).size());
+        JarResourceLoaderTest.createJar(jar, "templates/a.html", "templates/b.html", "templates/new.html");
+        jar.setLastModified(jar.lastModified() + 2000);
+        assertEquals(3, listings.list(url("templates/")).size());
+    }
+
+    @Test
+    void testNotALocalJar() throws Exception {
+        assertThrows(IOException.class, () -> listings.list(new URL("jar:http://localhost/x.jar!/templates/")));
+        assertThrows(IOException.class, () -> listings.list(directory.toURI().toURL()));
+    }
+
+    @Test
+    void testClasspathLoaderListsJarDirectories() throws Exception {
+        ThreadContextClasspathResourceLoader loader = new ThreadContextClasspathResourceLoader();
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { jar.toURI().toURL() },
+                ClassLoader.getPlatformClassLoader())) {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            assertEquals(Set.of("templates/a.html", "templates/b.html"), names(loader.getResourceURL("/templates")));
+            assertThrows(ResourceNotFoundException.class, () -> loader.getResourceURL("missing"));
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    private URL url(String entry) throws IOException {
+        return new URL("jar:" + jar.toURI().toURL() + "!/" + entry);
+    }
+
+    private static Set<String> names(Set<URL> urls) {
+        Set<String> names = new TreeSet<>();
+        for (URL url : urls) {
+            String form = url.toExternalForm();
+            names.add(form.substring(form.indexOf("!/") + 2));
+        }
+        return names;
+    }
+}
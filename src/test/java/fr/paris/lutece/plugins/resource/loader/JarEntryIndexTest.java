@@ -0,0 +1,101 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class JarEntryIndexTest {
+
+    @Test
+    void testLookup() {
+        JarEntryIndex.Builder builder = JarEntryIndex.builder();
+        for (int i = 0; i < 100; i++) {
+            builder.add("dir/file" + i + ".txt", i % 3);
+        }
+        builder.add("dir/file7.txt", 9);
+        JarEntryIndex index = builder.build();
+
+        assertEquals(100, index.size());
+        assertEquals(1, index.getJarId("dir/file1.txt"));
+        assertEquals(0, index.getJarId("dir/file99.txt"));
+        // the last JAR added wins
+        assertEquals(9, index.getJarId("dir/file7.txt"));
+        assertEquals(-1, index.getJarId("dir/file100.txt"));
+        assertEquals(-1, index.getJarId("a"));
+        assertEquals(-1, index.getJarId("z"));
+    }
+
+    @Test
+    void testNamesWithPrefix() {
+        JarEntryIndex.Builder builder = JarEntryIndex.builder();
+        for (int i = 0; i < 100; i++) {
+            builder.add("dir/file" + i + ".txt", 0);
+            builder.add("other/file" + i + ".txt", 0);
+        }
+        builder.add("dir.txt", 0);
+        builder.add("dir/sub/deep.txt", 0);
+        JarEntryIndex index = builder.build();
+
+        List<String> names = index.names("dir/").collect(Collectors.toList());
+        assertEquals(101, names.size());
+        assertTrue(names.contains("dir/sub/deep.txt"));
+        assertFalse(names.contains("dir.txt"));
+        assertEquals(List.of("dir/file0.txt", "dir/file1.txt"), index.names("dir/file").limit(2)
+                .collect(Collectors.toList()));
+        assertEquals(List.of("other/file99.txt"), index.names("other/file99").collect(Collectors.toList()));
+        assertEquals(0, index.names("missing/").count());
+        assertEquals(202, index.names("").count());
+        assertEquals(0, JarEntryIndex.EMPTY.names("dir/").count());
+    }
+
+    @Test
+    void testMerge() {
+        JarEntryIndex first = JarEntryIndex.builder().add("a.txt", 0).add("c.txt", 0).build();
+        JarEntryIndex second = JarEntryIndex.builder().add("b.txt", 1).add("c.txt", 1).build();
+        JarEntryIndex merged = first.merge(second);
+
+        assertEquals(3, merged.size());
+        assertEquals(0, merged.getJarId("a.txt"));
+        assertEquals(1, merged.getJarId("b.txt"));
+        assertEquals(1, merged.getJarId("c.txt"));
+        assertTrue(merged.contains("b.txt"));
+        assertFalse(JarEntryIndex.EMPTY.contains("b.txt"));
+
+        List<String> names = new ArrayList<>();
+        merged.forEach((name, jarId) -> names.add(name));
+        assertEquals(List.of("a.txt", "b.txt", "c.txt"), names);
+    }
+}
@@ -0,0 +1,137 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
+class JarHotReloadTest {
+
+    private File directory;
+
+    private File deployed;
+
+    private String jarUrl;
+
+    private JarResourceLoader loader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("lutece-resources").toFile();
+        deployed = new File(directory, "plugin.jar");
+        deploy(JarResourceLoaderTest.createJar(new File(directory, "v1.jar"), "a.txt", "old.txt"));
+        jarUrl = "jar:" + deployed.toURI() + "!/";
+        loader = new JarResourceLoader();
+        loader.addSearchPath(jarUrl);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        loader.close();
+        FileUtils.forceDelete(directory);
+    }
+
+    /**
+     * Replaces the deployed JAR by moving a new file in place, like a redeployment.
+     */
+    private void deploy(File jar) throws IOException {
+        File copy = new File(directory, "copy.tmp");
+        Files.copy(jar.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(copy.toPath(), deployed.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Test
+    void testReloadSwapsTheEntriesAndKeepsOpenStreamsReadable() throws Exception {
+        LuteceResource before = loader.findResource("a.txt").get();
+        InputStream open = before.getInputStream();
+
+        deploy(JarResourceLoaderTest.createJar(new File(directory, "v2.jar"), "a.txt", "new.txt"));
+        loader.reloadSearchPath(jarUrl);
+
+        assertFalse(loader.findResource("old.txt").isPresent());
+        try (InputStream in = loader.findResource("new.txt").get().getInputStream()) {
+            assertEquals("v2.jar:new.txt", FileUtils.toString(in, "UTF-8"));
+        }
+        try (InputStream in = loader.findResource("a.txt").get().getInputStream()) {
+            assertEquals("v2.jar:a.txt", FileUtils.toString(in, "UTF-8"));
+        }
+
+        // the previous version stays open for the stream in progress
+        assertEquals(1, loader.getRetiringJarCount());
+        try (InputStream in = open) {
+            assertEquals("v1.jar:a.txt", FileUtils.toString(in, "UTF-8"));
+        }
+        assertEquals(0, loader.getRetiringJarCount());
+
+        // a resource looked up before the reload reads the current version
+        try (InputStream in = before.getInputStream()) {
+            assertEquals("v2.jar:a.txt", FileUtils.toString(in, "UTF-8"));
+        }
+    }
+
+    @Test
+    void testRemoveSearchPath() throws Exception {
+        File other = JarResourceLoaderTest.createJar(new File(directory, "other.jar"), "a.txt", "other.txt");
+        String otherUrl = "jar:" + other.toURI() + "!/";
+        loader.addSearchPath(otherUrl);
+        try (InputStream in = loader.findResource("a.txt").get().getInputStream()) {
+            assertEquals("other.jar:a.txt", FileUtils.toString(in, "UTF-8"));
+        }
+        LuteceResource removed = loader.findResource("other.txt").get();
+
+        loader.removeSearchPath(otherUrl);
+
+        assertFalse(loader.findResource("other.txt").isPresent());
+        // the shadowed entry is visible again
+        try (InputStream in = loader.findResource("a.txt").get().getInputStream()) {
+            assertEquals("v1.jar:a.txt", FileUtils.toString(in, "UTF-8"));
+        }
+        assertThrows(FileNotFoundException.class, removed::getInputStream);
+        assertEquals(0, loader.getRetiringJarCount());
+
+        loader.addSearchPath(otherUrl);
+        assertTrue(loader.findResource("other.txt").isPresent());
+    }
+}
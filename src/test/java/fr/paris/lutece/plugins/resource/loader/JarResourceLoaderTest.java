@@ -0,0 +1,124 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.jboss.weld.junit5.auto.AddExtensions;
+import org.jboss.weld.junit5.auto.AddPackages;
+import org.jboss.weld.junit5.auto.EnableAutoWeld;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+
+@EnableAutoWeld
+@AddPackages(fr.paris.lutece.plugins.resource.loader.FileResourceLoader.class)
+@AddExtensions(io.smallrye.config.inject.ConfigExtension.class)
+@TestInstance(Lifecycle.PER_CLASS)
+class JarResourceLoaderTest extends AbstractResourceLoaderTest {
+
+    private File jarDirectory;
+
+    @BeforeAll
+    @Inject
+    void setResourceLoader(@Named(JarResourceLoader.ID) ResourceLoader jarResourceLoader) throws IOException {
+        jarDirectory = Files.createTempDirectory("lutece-resources").toFile();
+        File first = createJar(new File(jarDirectory, "first.jar"), "dir/jar.txt", "dir/shadowed.txt");
+        File second = createJar(new File(jarDirectory, "second.jar"), "dir/shadowed.txt", "other/second.txt");
+        resourceLoader = jarResourceLoader;
+        resourceLoader.addSearchPath("jar:" + first.toURI());
+        resourceLoader.addSearchPath("jar:" + second.toURI());
+    }
+
+    @AfterAll
+    void deleteJars() throws IOException {
+        FileUtils.forceDelete(jarDirectory);
+    }
+
+    /**
+     * Creates a JAR whose entries contain their own name, prefixed with the JAR name.
+     */
+    static File createJar(File file, String... entries) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            for (String entry : entries) {
+                out.putNextEntry(new JarEntry(entry));
+                out.write((file.getName() + ":" + entry).getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    @Test
+    void testLookupWithAAbsolutePathName() throws Exception {
+        assertResource("/dir/jar.txt", "first.jar:dir/jar.txt");
+    }
+
+    @Test
+    void testLookupWithARelativePath() throws Exception {
+        assertResource("other/second.txt", "second.jar:other/second.txt");
+    }
+
+    @Test
+    void testTheLastJarAddedWins() throws Exception {
+        assertResource("dir/shadowed.txt", "second.jar:dir/shadowed.txt");
+    }
+
+    @Test
+    void testLookupWhenTheResourceIsMissing() throws Exception {
+        assertMissingResource("/foo.txt");
+
+        assertMissingResource("dir/");
+    }
+
+    @Test
+    void testBatchLookup() throws Exception {
+        Map<String, LuteceResource> resources = resourceLoader
+                .findResources(Arrays.asList("dir/jar.txt", "missing.txt", "/other/second.txt"));
+        assertEquals(Arrays.asList("dir/jar.txt", "/other/second.txt"), Arrays.asList(resources.keySet().toArray()));
+        assertNull(resources.get("missing.txt"));
+    }
+}
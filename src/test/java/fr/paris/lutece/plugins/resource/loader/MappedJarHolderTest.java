@@ -0,0 +1,193 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
+@TestInstance(Lifecycle.PER_CLASS)
+class MappedJarHolderTest {
+
+    private static final String DEFLATED_CONTENT = "deflated content ".repeat(1000);
+
+    private static final String STORED_CONTENT = "stored content";
+
+    private File jarDirectory;
+
+    private MappedJarHolder holder;
+
+    private String jarUrl;
+
+    @BeforeAll
+    void createJar() throws IOException {
+        jarDirectory = Files.createTempDirectory("lutece-resources").toFile();
+        File jar = new File(jarDirectory, "mapped.jar");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new JarEntry("dir/"));
+            out.closeEntry();
+
+            out.putNextEntry(new JarEntry("dir/deflated.txt"));
+            out.write(DEFLATED_CONTENT.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+
+            byte[] stored = STORED_CONTENT.getBytes(StandardCharsets.UTF_8);
+            CRC32 crc = new CRC32();
+            crc.update(stored);
+            JarEntry entry = new JarEntry("dir/stored.txt");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(stored.length);
+            entry.setCrc(crc.getValue());
+            out.putNextEntry(entry);
+            out.write(stored);
+            out.closeEntry();
+
+            out.setComment("a trailing comment");
+        }
+        jarUrl = "jar:" + jar.toURI() + "!/";
+        holder = MappedJarHolder.open(jarUrl);
+    }
+
+    @AfterAll
+    void deleteJar() throws IOException {
+        holder.close();
+        FileUtils.forceDelete(jarDirectory);
+    }
+
+    @Test
+    void testStoredEntriesAreSlicesOfTheMapping() throws Exception {
+        ByteBuffer buffer = holder.getBuffer("dir/stored.txt");
+        assertNotNull(buffer);
+        assertTrue(buffer.isReadOnly());
+        assertTrue(buffer.isDirect());
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertEquals(STORED_CONTENT, new String(bytes, StandardCharsets.UTF_8));
+
+        assertEquals(STORED_CONTENT, FileUtils.toString(holder.getResource("dir/stored.txt"), "UTF-8"));
+    }
+
+    @Test
+    void testBuffersAreReachedThroughTheLoader() throws Exception {
+        JarResourceLoader loader = new JarResourceLoader();
+        loader.setMemoryMapped(true);
+        loader.addSearchPath(jarUrl);
+        try {
+            LuteceResource stored = loader.getResource("dir/stored.txt");
+            assertTrue(stored instanceof ByteBufferResource);
+            ByteBuffer buffer = ((ByteBufferResource) stored).getBuffer();
+            assertTrue(buffer.isDirect());
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            assertEquals(STORED_CONTENT, new String(bytes, StandardCharsets.UTF_8));
+
+            assertNull(((ByteBufferResource) loader.getResource("dir/deflated.txt")).getBuffer());
+        } finally {
+            loader.close();
+        }
+    }
+
+    @Test
+    void testDeflatedEntriesAreInflated() throws Exception {
+        assertNull(holder.getBuffer("dir/deflated.txt"));
+        assertEquals(DEFLATED_CONTENT, FileUtils.toString(holder.getResource("dir/deflated.txt"), "UTF-8"));
+        assertEquals(DEFLATED_CONTENT,
+                FileUtils.toString(holder.getLuteceResource("dir/deflated.txt").getInputStream(), "UTF-8"));
+    }
+
+    @Test
+    void testMissingEntries() throws Exception {
+        assertNull(holder.getBuffer("dir/missing.txt"));
+        assertNull(holder.getResource("dir/missing.txt"));
+        assertNull(holder.getLuteceResource("missing.txt"));
+    }
+
+    @Test
+    void testIndexSkipsDirectories() {
+        JarEntryIndex.Builder builder = JarEntryIndex.builder();
+        holder.indexEntries(builder, 3);
+        List<String> names = new ArrayList<>();
+        builder.build().forEach((name, jarId) -> names.add(name + "=" + jarId));
+        assertTrue(names.contains("dir/deflated.txt=3"));
+        assertTrue(names.contains("dir/stored.txt=3"));
+        assertFalse(names.contains("dir/=3"));
+    }
+
+    @Test
+    void testOnlyLocalJarsAreMappable() throws IOException {
+        assertFalse(MappedJarHolder.isMappable("jar:http://example.org/a.jar!/"));
+        assertFalse(MappedJarHolder.isMappable("jar:file:/a.jar!/b.jar!/"));
+
+        File notAJar = new File(jarDirectory, "not-a.jar");
+        Files.writeString(notAJar.toPath(), "not a jar");
+        assertThrows(IOException.class, () -> MappedJarHolder.open("jar:" + notAJar.toURI() + "!/"));
+    }
+
+    @Test
+    void testNameRunningPastTheCentralDirectory() throws IOException {
+        File corrupted = new File(jarDirectory, "corrupted.jar");
+        byte[] bytes = Files.readAllBytes(MappedJarHolder.toPath(jarUrl));
+        ByteBuffer archive = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int header = bytes.length - 4;
+        while (archive.getInt(header) != 0x02014b50) {
+            header--;
+        }
+        // the name length of the last central directory header
+        archive.putShort(header + 28, (short) 0xFFFF);
+        Files.write(corrupted.toPath(), bytes);
+
+        assertThrows(ZipException.class, () -> MappedJarHolder.open("jar:" + corrupted.toURI() + "!/"));
+    }
+}
@@ -0,0 +1,104 @@
+package fr.paris.lutece.plugins.resource.loader;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
+class PooledJarHolderTest {
+
+    private File directory;
+
+    private PooledJarHolder holder;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("lutece-resources").toFile();
+        File jar = JarResourceLoaderTest.createJar(new File(directory, "pooled.jar"), "a.txt", "b.txt");
+        holder = new PooledJarHolder("jar:" + jar.toURI() + "!/", 3);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        holder.close();
+        FileUtils.forceDelete(directory);
+    }
+
+    @Test
+    void testConcurrentStreamsAreSpreadOverTheHandles() throws Exception {
+        assertEquals(3, holder.getSize());
+        assertEquals(1, holder.getOpenHandleCount());
+
+        List<InputStream> streams = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            streams.add(holder.getLuteceResource(i % 2 == 0 ? "a.txt" : "b.txt").getInputStream());
+        }
+        assertEquals(3, holder.getOpenHandleCount());
+        for (int i = 0; i < streams.size(); i++) {
+            try (InputStream in = streams.get(i)) {
+                assertEquals(i % 2 == 0 ? "pooled.jar:a.txt" : "pooled.jar:b.txt",
+                        new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        // the streams are closed, so the first handle serves the next one
+        try (InputStream in = holder.getResource("b.txt")) {
+            assertEquals("pooled.jar:b.txt", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(3, holder.getOpenHandleCount());
+    }
+
+    @Test
+    void testMissingEntriesAndClosedHolders() throws Exception {
+        assertNull(holder.getLuteceResource("missing.txt"));
+        assertNull(holder.getResource("missing.txt"));
+
+        holder.close();
+        assertEquals(0, holder.getOpenHandleCount());
+    }
+
+    @Test
+    void testOnlyLocalJarsArePooled() {
+        assertThrows(IOException.class, () -> new PooledJarHolder("jar:http://example.org/a.jar!/", 2));
+    }
+}
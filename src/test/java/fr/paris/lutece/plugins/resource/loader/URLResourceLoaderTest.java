@@ -30,12 +30,21 @@ import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
 import org.jboss.weld.junit5.auto.AddExtensions;
 import org.jboss.weld.junit5.auto.AddPackages;
 import org.jboss.weld.junit5.auto.EnableAutoWeld;
 
+import fr.paris.lutece.plugins.resource.LuteceResource;
+import fr.paris.lutece.plugins.resource.util.FileUtils;
+
 @EnableAutoWeld
 @AddPackages(fr.paris.lutece.plugins.resource.loader.FileResourceLoader.class)
 @AddExtensions(io.smallrye.config.inject.ConfigExtension.class)
@@ -54,4 +63,165 @@ class URLResourceLoaderTest {
             assertEquals("Could not find resource 'README.md'.", e.getMessage());
         }
     }
+
+    @Test
+    void testRemoteResourceIsRevalidated() throws Exception {
+        File directory = Files.createTempDirectory("lutece-resources").toFile();
+        HttpResourceFetcherTest.Server server = new HttpResourceFetcherTest.Server();
+        try {
+            server.put("/skin/page.html", "<html/>");
+            URLResourceLoader loader = new URLResourceLoader();
+            loader.setCacheDirectory(directory.toPath());
+            loader.addSearchPath(server.root());
+
+            LuteceResource resource = loader.getResource("skin/page.html");
+            assertEquals(0, server.downloads.get());
+            assertEquals("<html/>", FileUtils.toString(resource.getInputStream(), "UTF-8"));
+            assertEquals("<html/>", FileUtils.toString(resource.getInputStream(), "UTF-8"));
+            assertEquals("<html/>", FileUtils.toString(loader.getResource("skin/page.html").getInputStream(), "UTF-8"));
+            assertEquals(server.root() + "skin/page.html", resource.getName());
+            assertFalse(loader.findResource("skin/missing.html").isPresent());
+
+            // the second lookup is a probe confirming the cached body
+            assertEquals(1, server.downloads.get());
+            assertEquals(1, server.notModified.get());
+            assertEquals(2, server.probes.get());
+        } finally {
+            server.stop();
+            FileUtils.forceDelete(directory);
+        }
+    }
+
+    @Test
+    void testRememberedRootIsTriedFirst() throws Exception {
+        File directory = Files.createTempDirectory("lutece-resources").toFile();
+        HttpResourceFetcherTest.Server first = new HttpResourceFetcherTest.Server();
+        HttpResourceFetcherTest.Server second = new HttpResourceFetcherTest.Server();
+        try {
+            second.put("/skin/page.html", "second");
+            URLResourceLoader loader = new URLResourceLoader();
+            loader.setCacheDirectory(directory.toPath());
+            loader.addSearchPath(first.root());
+            loader.addSearchPath(second.root());
+
+            assertEquals("second", FileUtils.toString(loader.getResource("skin/page.html").getInputStream(), "UTF-8"));
+            assertEquals(1, first.requests.get());
+            assertEquals("second", FileUtils.toString(loader.getResource("skin/page.html").getInputStream(), "UTF-8"));
+            assertEquals(1, first.requests.get());
+            assertEquals(3, second.requests.get());
+
+            // the remembered root fails : it is forgotten and the roots are tried in order
+            second.remove("/skin/page.html");
+            first.put("/skin/page.html", "first");
+            assertEquals("first", FileUtils.toString(loader.getResource("skin/page.html").getInputStream(), "UTF-8"));
+            assertEquals(4, second.requests.get());
+            assertEquals("first", FileUtils.toString(loader.getResource("skin/page.html").getInputStream(), "UTF-8"));
+            assertEquals(4, second.requests.get());
+        } finally {
+            first.stop();
+            second.stop();
+            FileUtils.forceDelete(directory);
+        }
+    }
+
+    @Test
+    void testLocalURLsAreProbedWithoutOpening() throws Exception {
+        File directory = Files.createTempDirectory("lutece-resources").toFile();
+        try {
+            Files.write(new File(directory, "page.html").toPath(), "<html/>".getBytes(StandardCharsets.UTF_8));
+            File jar = JarResourceLoaderTest.createJar(new File(directory, "skin.jar"), "skin/page.html");
+            URLResourceLoader loader = new URLResourceLoader();
+            loader.addSearchPath(directory.toURI().toString());
+            loader.addSearchPath("jar:" + jar.toURI() + "!/");
+
+            assertEquals("<html/>", FileUtils.toString(loader.getResource("page.html").getInputStream(), "UTF-8"));
+            assertFalse(loader.findResource("missing.html").isPresent());
+            assertEquals("jar:" + jar.toURI() + "!/skin/page.html", loader.getResource("skin/page.html").getName());
+            assertFalse(loader.findResource("skin/missing.html").isPresent());
+        } finally {
+            FileUtils.forceDelete(directory);
+        }
+    }
+
+    @Test
+    void testFailingRootIsSkipped() throws Exception {
+        File directory = Files.createTempDirectory("lutece-resources").toFile();
+        HttpResourceFetcherTest.Server server = new HttpResourceFetcherTest.Server();
+        try {
+            server.put("/skin/page.html", "<html/>");
+            URLResourceLoader loader = new URLResourceLoader();
+            loader.setCacheDirectory(directory.toPath());
+            loader.addSearchPath(server.root());
+            assertEquals("<html/>", FileUtils.toString(loader.getResource("skin/page.html").getInputStream(), "UTF-8"));
+
+            // the stale copy is served while the root fails, until its circuit opens
+            server.failing = true;
+            for (int i = 0; i < 5; i++) {
+                assertEquals(CircuitBreaker.State.CLOSED, loader.getCircuitStates().get(server.root()));
+                assertEquals("<html/>",
+                        FileUtils.toString(loader.getResource("skin/page.html").getInputStream(), "UTF-8"));
+            }
+            assertEquals(CircuitBreaker.State.OPEN, loader.getCircuitStates().get(server.root()));
+
+            // the open root is not requested anymore, only its cached copies are served
+            int requests = server.requests.get();
+            assertEquals(server.root() + "skin/page.html", loader.getResource("skin/page.html").getName());
+            assertFalse(loader.findResource("skin/other.html").isPresent());
+            assertEquals(requests, server.requests.get());
+            assertEquals(2, loader.getCircuitRejectionCount());
+            assertEquals(0, loader.getBulkheadRejectionCount());
+        } finally {
+            server.stop();
+            FileUtils.forceDelete(directory);
+        }
+    }
+
+    @Test
+    void testDefaultCacheDirectoryIsDeletedOnClose() throws Exception {
+        HttpResourceFetcherTest.Server server = new HttpResourceFetcherTest.Server();
+        try {
+            server.put("/skin/page.html", "<html/>");
+            URLResourceLoader loader = new URLResourceLoader();
+            loader.addSearchPath(server.root());
+            assertEquals("<html/>", FileUtils.toString(loader.getResource("skin/page.html").getInputStream(), "UTF-8"));
+            File cacheDirectory = loader.getFetcher().getCacheDirectory().toFile();
+            assertTrue(cacheDirectory.isDirectory());
+
+            loader.close();
+            assertFalse(cacheDirectory.exists());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void testRefreshAheadDoesNotWaitOnEarlierRoots() throws Exception {
+        File directory = Files.createTempDirectory("lutece-resources").toFile();
+        HttpResourceFetcherTest.Server first = new HttpResourceFetcherTest.Server();
+        HttpResourceFetcherTest.Server second = new HttpResourceFetcherTest.Server();
+        URLResourceLoader loader = new URLResourceLoader();
+        try {
+            second.put("/skin/page.html", "second");
+            loader.setCacheDirectory(directory.toPath());
+            loader.setRefreshAhead(true);
+            // shorter than the hard TTL, which keeps the remembered roots in the refresh-ahead mode
+            loader.setRootAffinityTtl(1);
+            loader.addSearchPath(first.root());
+            loader.addSearchPath(second.root());
+            assertEquals("second", FileUtils.toString(loader.getResource("skin/page.html").getInputStream(), "UTF-8"));
+
+            Thread.sleep(20);
+            int requests = first.requests.get() + second.requests.get();
+            for (int i = 0; i < 3; i++) {
+                assertEquals("second",
+                        FileUtils.toString(loader.getResource("skin/page.html").getInputStream(), "UTF-8"));
+            }
+            assertEquals(requests, first.requests.get() + second.requests.get());
+        } finally {
+            loader.close();
+            first.stop();
+            second.stop();
+            FileUtils.forceDelete(directory);
+        }
+    }
 }
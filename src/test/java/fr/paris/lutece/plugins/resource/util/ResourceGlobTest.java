@@ -0,0 +1,90 @@
+package fr.paris.lutece.plugins.resource.util;
+
+
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2004, The Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Modifications and adaptations for the Lutece framework by City of Paris, 2024.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class ResourceGlobTest {
+
+    @Test
+    void testRecursiveGlob() {
+        ResourceGlob glob = ResourceGlob.compile("/templates/**/*.html");
+        assertEquals("templates/", glob.getBase());
+        assertEquals(Integer.MAX_VALUE, glob.getMaxDepth());
+        assertTrue(glob.matches("templates/a.html"));
+        assertTrue(glob.matches("/templates/admin/plugins/a.html"));
+        assertFalse(glob.matches("templates/a.htm"));
+        assertFalse(glob.matches("templates.html"));
+        assertFalse(glob.matches("other/templates/a.html"));
+    }
+
+    @Test
+    void testSegmentWildcards() {
+        ResourceGlob glob = ResourceGlob.compile("sql/plugins/*/init_*.sql");
+        assertEquals("sql/plugins/", glob.getBase());
+        assertEquals(2, glob.getMaxDepth());
+        assertTrue(glob.matches("sql/plugins/forms/init_db.sql"));
+        assertFalse(glob.matches("sql/plugins/forms/core/init_db.sql"));
+        assertFalse(glob.matches("sql/plugins/init_db.sql"));
+
+        ResourceGlob single = ResourceGlob.compile("dir/file?.txt");
+        assertTrue(single.matches("dir/file1.txt"));
+        assertFalse(single.matches("dir/file10.txt"));
+        assertFalse(single.matches("dir/file/.txt"));
+    }
+
+    @Test
+    void testLiteralsAreQuoted() {
+        ResourceGlob glob = ResourceGlob.compile("dir.v1/a+b(c).txt");
+        assertEquals("dir.v1/", glob.getBase());
+        assertEquals(1, glob.getMaxDepth());
+        assertTrue(glob.matches("dir.v1/a+b(c).txt"));
+        assertFalse(glob.matches("dirXv1/a+b(c).txt"));
+    }
+
+    @Test
+    void testLeadingWildcards() {
+        ResourceGlob glob = ResourceGlob.compile("**");
+        assertEquals("", glob.getBase());
+        assertTrue(glob.matches("a"));
+        assertTrue(glob.matches("a/b/c.txt"));
+
+        ResourceGlob anyDirectory = ResourceGlob.compile("*/file.txt");
+        assertEquals("", anyDirectory.getBase());
+        assertEquals(2, anyDirectory.getMaxDepth());
+        assertTrue(anyDirectory.matches("dir/file.txt"));
+        assertFalse(anyDirectory.matches("file.txt"));
+
+        assertThrows(IllegalArgumentException.class, () -> ResourceGlob.compile("/"));
+    }
+}